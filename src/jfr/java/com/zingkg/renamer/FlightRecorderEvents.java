@@ -0,0 +1,151 @@
+package com.zingkg.renamer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The flight recorder events of the renamer. Renames are only recorded when they take at least a
+ * millisecond by default, so a recording of a large job holds the slow renames rather than every
+ * one; set the threshold of com.zingkg.renamer.Rename to 0 ms to record them all.
+ */
+final class FlightRecorderEvents extends RenameEvents {
+    /**
+     * A command run from the command line or by the server.
+     */
+    @Name("com.zingkg.renamer.Job")
+    @Label("Rename Job")
+    @Category("Renamer")
+    @Description("A rename command, from reading its files to renaming the last one")
+    @StackTrace(false)
+    static final class JobEvent extends Event {
+        @Label("Id")
+        @Description("The id of a server job")
+        String id;
+
+        @Label("Command")
+        String command;
+
+        @Label("Status")
+        @Description("0 if every file was renamed")
+        int status;
+    }
+
+    /**
+     * The new names of a batch of files being computed.
+     */
+    @Name("com.zingkg.renamer.Naming")
+    @Label("Batch Naming")
+    @Category("Renamer")
+    @Description("Reading what a batch of files needs and computing their new names")
+    @StackTrace(false)
+    static final class NamingEvent extends Event {
+        @Label("First Index")
+        int firstIndex;
+
+        @Label("Files")
+        int files;
+    }
+
+    /**
+     * A file being moved to its new name.
+     */
+    @Name("com.zingkg.renamer.Rename")
+    @Label("Rename")
+    @Category("Renamer")
+    @Description("A file moved to its new name, including retries")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class RenameEvent extends Event {
+        @Label("Source")
+        String source;
+
+        @Label("Target")
+        String target;
+
+        @Label("Success")
+        boolean success;
+
+        @Label("Failure")
+        String failure;
+    }
+
+    @Override
+    Object beginJob() {
+        JobEvent event = new JobEvent();
+        if (!event.isEnabled())
+            return null;
+
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endJob(Object job, String id, String command, int status) {
+        if (job == null)
+            return;
+
+        JobEvent event = (JobEvent) job;
+        event.end();
+        if (event.shouldCommit()) {
+            event.id = id;
+            event.command = command;
+            event.status = status;
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginNaming() {
+        NamingEvent event = new NamingEvent();
+        if (!event.isEnabled())
+            return null;
+
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endNaming(Object naming, int firstIndex, int files) {
+        if (naming == null)
+            return;
+
+        NamingEvent event = (NamingEvent) naming;
+        event.end();
+        if (event.shouldCommit()) {
+            event.firstIndex = firstIndex;
+            event.files = files;
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginRename() {
+        RenameEvent event = new RenameEvent();
+        if (!event.isEnabled())
+            return null;
+
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endRename(Object rename, RenameResult result) {
+        if (rename == null)
+            return;
+
+        RenameEvent event = (RenameEvent) rename;
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = result.getSource().getPath();
+            event.target = result.getTarget().getPath();
+            event.success = result.isSuccess();
+            event.failure = result.getFailureReason();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the name transforms over batches of synthetic paths. One operation is a full batch.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FileUtilitiesBenchmark {
+    /**
+     * The number of paths in a batch.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<String> paths;
+
+    @Setup
+    public void createPaths() {
+        paths = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            paths.add(
+                File.separator + "srv" + File.separator + "archive" + File.separator + "batch" +
+                (i % 100) + File.separator + "0" + (i % 1000) + "IMG_" + i + ".jpg"
+            );
+        }
+    }
+
+    @Benchmark
+    public void renameAppendAsc(Blackhole blackhole) {
+        FileUtilities.renameAppendAsc("photo", 1, paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void renameAppendDesc(Blackhole blackhole) {
+        FileUtilities.renameAppendDesc("photo", size, paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void renameReplace(Blackhole blackhole) {
+        FileUtilities.renameReplace("IMG", "photo", paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void numberPrepend(Blackhole blackhole) {
+        FileUtilities.numberPrepend("-", 1, paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void numberPrependDesc(Blackhole blackhole) {
+        FileUtilities.numberPrependDesc("-", size, paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void numberAppend(Blackhole blackhole) {
+        FileUtilities.numberAppend("_", 1, paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void numberAppendDesc(Blackhole blackhole) {
+        FileUtilities.numberAppendDesc("_", size, paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void deletePrecedingAndNumberPrepend(Blackhole blackhole) {
+        FileUtilities.deletePrecedingAndNumberPrepend("~", 1, paths.stream())
+            .forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void deleteEndingAndNumberAppend(Blackhole blackhole) {
+        FileUtilities.deleteEndingAndNumberAppend(",", 1, paths.stream())
+            .forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void prependString(Blackhole blackhole) {
+        FileUtilities.prependString("hi-", paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void appendString(Blackhole blackhole) {
+        FileUtilities.appendString("-bye", paths.stream()).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void regexReplace(Blackhole blackhole) {
+        FileUtilities.regexReplace("IMG_(\\d+)", "photo-$1", paths.stream())
+            .forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void wipeRenameAndNumber(Blackhole blackhole) {
+        FileUtilities.wipeRenameAndNumber("vacation-", paths.stream())
+            .forEach(blackhole::consume);
+    }
+}
@@ -0,0 +1,82 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures renaming a batch of files on disk. The files are created under the directory in the
+ * renamer.bench.dir system property, which defaults to the /dev/shm tmpfs so the benchmark
+ * measures the rename loop rather than the disk. One operation is a full batch.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class RenameFilesBenchmark {
+    /**
+     * The number of files in a batch.
+     */
+    @Param({"1000", "100000"})
+    public int size;
+
+    /**
+     * The number of files renamed at the same time.
+     */
+    @Param({"1", "8"})
+    public int jobs;
+
+    private Path directory;
+    private List<String> paths;
+
+    @Setup(Level.Iteration)
+    public void createFiles() throws IOException {
+        final String benchDir = System.getProperty("renamer.bench.dir", "/dev/shm");
+        Path parent = Paths.get(benchDir);
+        if (!Files.isDirectory(parent))
+            parent = Paths.get(System.getProperty("java.io.tmpdir"));
+
+        directory = Files.createTempDirectory(parent, "renamer-bench");
+        paths = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            paths.add(Files.createFile(directory.resolve("IMG_" + i + ".jpg")).toString());
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    public List<RenameResult> renameFiles() {
+        Stream<File> newFiles = FileUtilities.numberAppend("_", 1, paths.stream());
+        return FileUtilities.renameFiles(paths.stream(), newFiles, jobs);
+    }
+}
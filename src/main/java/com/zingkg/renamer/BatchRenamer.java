@@ -0,0 +1,159 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.nio.file.FileSystemException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Renames the files of a run one batch at a time, for the command line and the server alike.
+ * Each batch is prepared by the operation, named, planned and renamed, and numbering carries on
+ * from one batch to the next. A file the operation leaves alone because it lacks the metadata the
+ * operation needs is reported as a failed rename.
+ *
+ * Batches are planned one at a time, so while more batches follow, a rename onto an existing file
+ * is deferred in case a later batch moves that file away. The deferred renames are planned again
+ * with the next batch, and rejected with the last one.
+ */
+final class BatchRenamer {
+    /**
+     * The most files of a run held in memory at a time.
+     */
+    static final int BATCH_SIZE = 64 * 1024;
+
+    /**
+     * Observes the batches of a run. Does nothing by default.
+     */
+    interface Listener extends RenameExecutor.RenameListener {
+        /**
+         * Called with the files of a batch the operation leaves alone because their contents are
+         * the same as another file's.
+         *
+         * @param copies Each copy followed by the new path of the file it is a copy of.
+         */
+        default void copies(List<String[]> copies) {
+        }
+    }
+
+    private final FileOperation operation;
+    private final RenameExecutor executor;
+    private final Listener listener;
+    private final RenameStats stats;
+    private final List<File> deferredSources = new ArrayList<>();
+    private final List<File> deferredTargets = new ArrayList<>();
+    private Set<String> skipped = Collections.emptySet();
+    private int index;
+
+    /**
+     * Creates a renamer for a run.
+     *
+     * @param operation The operation computing the new path of each file.
+     * @param executor  Renames the files.
+     * @param listener  Told about each batch, wave and rename.
+     * @param stats     Records the time spent in each phase and the renames.
+     */
+    BatchRenamer(
+        FileOperation operation,
+        RenameExecutor executor,
+        Listener listener,
+        RenameStats stats
+    ) {
+        this.operation = operation;
+        this.executor = executor;
+        this.listener = listener;
+        this.stats = stats;
+    }
+
+    /**
+     * Skips files in the batches that follow, such as the files a journal records as renamed.
+     *
+     * @param sources The absolute paths of the files to skip.
+     */
+    void skip(Set<String> sources) {
+        skipped = sources;
+    }
+
+    /**
+     * @return The number of files in the batches renamed so far.
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Reads the next batch of a run's files.
+     *
+     * @param files The paths of the files of the run not yet read.
+     * @param batch Emptied and filled with the paths of up to {@link #BATCH_SIZE} files.
+     * @return False if there were no files left.
+     */
+    static boolean nextBatch(Iterator<String> files, List<String> batch) {
+        batch.clear();
+        while (batch.size() < BATCH_SIZE && files.hasNext())
+            batch.add(files.next());
+        return !batch.isEmpty();
+    }
+
+    /**
+     * Renames a batch of files.
+     *
+     * @param batch The paths of the files.
+     * @param more  True if more batches follow.
+     * @return The outcome of each rename.
+     */
+    List<RenameResult> rename(List<String> batch, boolean more) {
+        stats.enter(RenameStats.Phase.PREPARE);
+        final Object naming = RenameEvents.get().beginNaming();
+        operation.prepare(batch, index);
+        if (operation instanceof KeepsCopies)
+            listener.copies(((KeepsCopies) operation).getCopies());
+        stats.enter(RenameStats.Phase.NAME);
+        List<File> sources = new ArrayList<>(deferredSources.size() + batch.size());
+        List<File> targets = new ArrayList<>(deferredTargets.size() + batch.size());
+        sources.addAll(deferredSources);
+        targets.addAll(deferredTargets);
+        Iterator<File> targetIterator =
+            FileUtilities.apply(operation, index, batch.stream()).iterator();
+        final NeedsMetadata metadata =
+            operation instanceof NeedsMetadata ? (NeedsMetadata) operation : null;
+        List<RenameResult> missing = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            final File source = new File(batch.get(i));
+            final File target = targetIterator.next();
+            if (skipped.contains(source.getAbsolutePath()))
+                continue;
+
+            final String reason = metadata == null ? null : metadata.getMissing(index + i);
+            if (reason != null) {
+                missing.add(new RenameResult(
+                    source,
+                    target,
+                    false,
+                    new FileSystemException(batch.get(i), null, reason),
+                    0
+                ));
+            } else {
+                sources.add(source);
+                targets.add(target);
+            }
+        }
+        RenameEvents.get().endNaming(naming, index, batch.size());
+        index += batch.size();
+
+        stats.enter(RenameStats.Phase.PLAN);
+        RenameSchedule schedule = RenameSchedule.plan(sources, targets, more);
+        deferredSources.clear();
+        deferredTargets.clear();
+        deferredSources.addAll(schedule.getDeferredSources());
+        deferredTargets.addAll(schedule.getDeferredTargets());
+        stats.enter(RenameStats.Phase.RENAME);
+        List<RenameResult> results = executor.execute(schedule, listener);
+        missing.forEach(listener::renamed);
+        results.addAll(missing);
+        stats.record(results);
+        return results;
+    }
+}
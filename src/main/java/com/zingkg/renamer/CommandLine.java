@@ -1,11 +1,28 @@
 package com.zingkg.renamer;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * Main class for running the program as a command line application.
  */
@@ -13,46 +30,407 @@ public class CommandLine {
     public static int ERROR = 1;
     public static int SUCCESS = 0;
 
+    /**
+     * The console option to set the number of files renamed at the same time.
+     */
+    public static final String JOBS_OPTION = "--jobs";
+
+    /**
+     * The console option to read the files to rename from a list, or "-" for standard input.
+     */
+    public static final String FILES_FROM_OPTION = "--files-from";
+
+    /**
+     * The console option to separate the files in the list by NUL bytes rather than new lines.
+     */
+    public static final String NUL_DELIMITED_OPTION = "-0";
+
+    /**
+     * The console option to rename every file under a directory.
+     */
+    public static final String RECURSIVE_OPTION = "--recursive";
+
+    /**
+     * The console option to only rename the files found under the directory matching a glob.
+     */
+    public static final String INCLUDE_OPTION = "--include";
+
+    /**
+     * The console option to skip the files and directories found under the directory matching a
+     * glob.
+     */
+    public static final String EXCLUDE_OPTION = "--exclude";
+
+    /**
+     * The console option to record each rename in a journal before it happens.
+     */
+    public static final String JOURNAL_OPTION = "--journal";
+
+    /**
+     * The console option to skip the files the journal records as already renamed.
+     */
+    public static final String RESUME_OPTION = "--resume";
+
+    /**
+     * The console option to sort the files before they are renamed and numbered.
+     */
+    public static final String SORT_OPTION = "--sort";
+
+    /**
+     * The console option to keep the capture times and digests of files in a cache file between
+     * runs.
+     */
+    public static final String CACHE_OPTION = "--cache";
+
+    /**
+     * The console option to set the number of entries the cache keeps.
+     */
+    public static final String CACHE_SIZE_OPTION = "--cache-size";
+
+    /**
+     * The console option to keep renaming the files that arrive in a directory.
+     */
+    public static final String WATCH_OPTION = "--watch";
+
+    /**
+     * The console option to print the time spent in each phase and the rename latencies once the
+     * files are renamed.
+     */
+    public static final String STATS_OPTION = "--stats";
+
+    /**
+     * The orders accepted by {@link #SORT_OPTION}.
+     */
+    private static final String SORT_ORDERS = "<natural|lexical|reverse|mtime|ctime|size|taken>";
+
+    /**
+     * The console command to reverse the renames recorded in a journal.
+     */
+    public static final String UNDO_COMMAND = "--undo";
+
+    /**
+     * The console command to run rename jobs read from standard input until it ends.
+     */
+    public static final String SERVE_COMMAND = "--serve";
+
+    /**
+     * How long a file arriving in a watched directory must go unchanged before it is renamed.
+     */
+    private static final long WATCH_SETTLE_MILLIS = 250;
+
     /**
      * @param args the command line arguments.
      * @return Success of operation.
      */
     public static int main(String[] args) {
+        return run(args, null);
+    }
+
+    /**
+     * Runs a command, handing its files to a renamer instead of renaming them here if one is
+     * given. Options that keep state between runs are refused with a renamer.
+     *
+     * @param args    The command line arguments.
+     * @param renamer Renames the files of the command, or null to rename them here.
+     * @return Success of operation.
+     */
+    static int run(String[] args, Renamer renamer) {
+        Options options = new Options();
+        final int commandPos = parseOptions(args, options);
+        if (commandPos < 0)
+            return ERROR;
+
+        args = Arrays.copyOfRange(args, commandPos, args.length);
         if (args.length < 1) {
             System.err.println("--help for more information");
             return ERROR;
         }
+        if (
+            renamer != null &&
+            (options.journal != null || options.watch != null || options.stats.isEnabled() ||
+                isServerCommand(args[0]) || "-".equals(options.filesFrom))
+        ) {
+            System.err.println(
+                JOURNAL_OPTION + ", " + WATCH_OPTION + ", " + STATS_OPTION + ", " +
+                FILES_FROM_OPTION + " -, " + UNDO_COMMAND + " and " + SERVE_COMMAND +
+                " cannot be used in a server job"
+            );
+            return ERROR;
+        }
+        options.renamer = renamer;
+        options.command = args[0];
 
-        switch (args[0]) {
-            case "--help":
-                printHelp();
-                return SUCCESS;
-            case FileUtilities.RENAME_COMMAND:
-                return rename(args);
-            case FileUtilities.WIPE_RENAME_NUMBER_COMMAND:
-                return wipeRenameNumber(args);
-            case FileUtilities.NUMBER_PREPEND_COMMAND:
-                return numberPrepend(args);
-            case FileUtilities.NUMBER_APPEND_COMMAND:
-                return numberAppend(args);
-            case FileUtilities.DELETE_PRECEDING_NUM_PREPEND_COMMAND:
-                return deletePrecedingNumPrepend(args);
-            case FileUtilities.DELETE_ENDING_NUM_APPEND_COMMAND:
-                return deleteEndingNumAppend(args);
-            case FileUtilities.PREPEND_STRING_COMMAND:
-                return prepend(args);
-            case FileUtilities.APPEND_STRING_COMMAND:
-                return append(args);
-            default:
+        if (options.cacheFile != null) {
+            try {
+                options.cache = renamer == null ?
+                    MetadataCache.open(options.cacheFile, options.cacheSize) :
+                    renamer.getCache(options.cacheFile, options.cacheSize);
+            } catch (IOException e) {
+                System.err.println("Could not open the cache: " + e.getMessage());
                 return ERROR;
+            }
+        }
+
+        try {
+            switch (args[0]) {
+                case "--help":
+                    printHelp();
+                    return SUCCESS;
+                case FileUtilities.RENAME_COMMAND:
+                    return rename(options, args);
+                case FileUtilities.REGEX_COMMAND:
+                    return regex(options, args);
+                case FileUtilities.TEMPLATE_COMMAND:
+                    return template(options, args);
+                case FileUtilities.HASH_COMMAND:
+                    return hash(options, args);
+                case FileUtilities.CHAIN_COMMAND:
+                    return chain(options, args);
+                case FileUtilities.WIPE_RENAME_NUMBER_COMMAND:
+                    return wipeRenameNumber(options, args);
+                case FileUtilities.NUMBER_PREPEND_COMMAND:
+                    return numberPrepend(options, args);
+                case FileUtilities.NUMBER_APPEND_COMMAND:
+                    return numberAppend(options, args);
+                case FileUtilities.DELETE_PRECEDING_NUM_PREPEND_COMMAND:
+                    return deletePrecedingNumPrepend(options, args);
+                case FileUtilities.DELETE_ENDING_NUM_APPEND_COMMAND:
+                    return deleteEndingNumAppend(options, args);
+                case FileUtilities.PREPEND_STRING_COMMAND:
+                    return prepend(options, args);
+                case FileUtilities.APPEND_STRING_COMMAND:
+                    return append(options, args);
+                case UNDO_COMMAND:
+                    return undo(args);
+                case SERVE_COMMAND:
+                    return serve(options);
+                default:
+                    return ERROR;
+            }
+        } catch (UncheckedIOException e) {
+            System.err.println("Could not rename files: " + e.getCause());
+            return ERROR;
+        } finally {
+            closeCache(options);
+        }
+    }
+
+    /**
+     * Saves the cache, if there is one and it is not the renamer's. A cache that cannot be saved
+     * only costs the next run time, so it does not fail the command.
+     *
+     * @param options The options given on the command line.
+     */
+    private static void closeCache(Options options) {
+        if (options.cache == null || options.renamer != null)
+            return;
+
+        try {
+            options.cache.close();
+        } catch (IOException e) {
+            System.err.println("Could not save the cache: " + e.getMessage());
         }
     }
 
+    /**
+     * Reads the options that come before the command.
+     *
+     * @param args    The command line arguments array.
+     * @param options The options to fill in.
+     * @return The position of the command in the arguments, or -1 if an option is invalid.
+     */
+    private static int parseOptions(String[] args, Options options) {
+        int pos = 0;
+        while (pos < args.length) {
+            switch (args[pos]) {
+                case JOBS_OPTION:
+                    if (missingValue(args, pos, "<number of jobs>"))
+                        return -1;
+                    try {
+                        options.jobs = Integer.parseInt(args[pos + 1]);
+                    } catch (NumberFormatException e) {
+                        options.jobs = 0;
+                    }
+                    if (options.jobs < 1) {
+                        System.err.println(
+                            JOBS_OPTION + " must be a positive number: " + args[pos + 1]
+                        );
+                        return -1;
+                    }
+                    pos += 2;
+                    break;
+                case FILES_FROM_OPTION:
+                    if (missingValue(args, pos, "<list file or ->"))
+                        return -1;
+                    options.filesFrom = args[pos + 1];
+                    pos += 2;
+                    break;
+                case NUL_DELIMITED_OPTION:
+                    options.nulDelimited = true;
+                    pos++;
+                    break;
+                case RECURSIVE_OPTION:
+                    if (missingValue(args, pos, "<directory>"))
+                        return -1;
+                    options.recursive = args[pos + 1];
+                    pos += 2;
+                    break;
+                case INCLUDE_OPTION:
+                    if (missingValue(args, pos, "<glob>"))
+                        return -1;
+                    options.includes.add(args[pos + 1]);
+                    pos += 2;
+                    break;
+                case EXCLUDE_OPTION:
+                    if (missingValue(args, pos, "<glob>"))
+                        return -1;
+                    options.excludes.add(args[pos + 1]);
+                    pos += 2;
+                    break;
+                case JOURNAL_OPTION:
+                    if (missingValue(args, pos, "<journal>"))
+                        return -1;
+                    options.journal = new File(args[pos + 1]);
+                    pos += 2;
+                    break;
+                case RESUME_OPTION:
+                    options.resume = true;
+                    pos++;
+                    break;
+                case SORT_OPTION:
+                    if (missingValue(args, pos, SORT_ORDERS))
+                        return -1;
+                    try {
+                        options.sort = FileSorter.Order.parse(args[pos + 1]);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println(e.getMessage());
+                        return -1;
+                    }
+                    pos += 2;
+                    break;
+                case WATCH_OPTION:
+                    if (missingValue(args, pos, "<directory>"))
+                        return -1;
+                    options.watch = args[pos + 1];
+                    pos += 2;
+                    break;
+                case CACHE_OPTION:
+                    if (missingValue(args, pos, "<cache>"))
+                        return -1;
+                    options.cacheFile = new File(args[pos + 1]);
+                    pos += 2;
+                    break;
+                case CACHE_SIZE_OPTION:
+                    if (missingValue(args, pos, "<entries>"))
+                        return -1;
+                    try {
+                        options.cacheSize = Integer.parseInt(args[pos + 1]);
+                    } catch (NumberFormatException e) {
+                        options.cacheSize = 0;
+                    }
+                    if (options.cacheSize < 1) {
+                        System.err.println(
+                            CACHE_SIZE_OPTION + " must be a positive number: " + args[pos + 1]
+                        );
+                        return -1;
+                    }
+                    pos += 2;
+                    break;
+                case STATS_OPTION:
+                    options.stats = new RenameStats();
+                    options.stats.enter(RenameStats.Phase.PARSE);
+                    pos++;
+                    break;
+                default:
+                    if (options.resume && options.journal == null) {
+                        System.err.println(RESUME_OPTION + " requires " + JOURNAL_OPTION);
+                        return -1;
+                    }
+                    return pos;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Checks that an option is followed by its value.
+     *
+     * @param args  The command line arguments array.
+     * @param pos   The position of the option in the arguments.
+     * @param value A description of the value.
+     * @return True if the value is missing.
+     */
+    private static boolean missingValue(String[] args, int pos, String value) {
+        if (pos + 1 < args.length)
+            return false;
+
+        System.err.println(args[pos] + " requires arguments: " + value);
+        return true;
+    }
+
     /**
      * Prints help to be displayed on the command line.
      */
     private static void printHelp() {
-        System.out.println("usage: renamer command <args> <files>");
+        System.out.println("usage: renamer [options] command <args> <files>");
+        System.out.println("Options are:");
+        System.out.println(
+            '\t' + JOBS_OPTION + " <n>\tRenames n files at the same time. Defaults to a count " +
+            "suited to the file system"
+        );
+        System.out.println(
+            '\t' + FILES_FROM_OPTION + " <file>\tAlso renames the files listed one per line in " +
+            "the file, or on standard input for -"
+        );
+        System.out.println(
+            '\t' + NUL_DELIMITED_OPTION + "\tFiles in the list are separated by NUL bytes, as " +
+            "written by find -print0"
+        );
+        System.out.println(
+            '\t' + RECURSIVE_OPTION + " <directory>\tAlso renames every file under the " +
+            "directory, in no particular order"
+        );
+        System.out.println(
+            '\t' + INCLUDE_OPTION + " <glob>\tOnly renames the files found under the directory " +
+            "that match the glob"
+        );
+        System.out.println(
+            '\t' + EXCLUDE_OPTION + " <glob>\tSkips the files and directories found under the " +
+            "directory that match the glob"
+        );
+        System.out.println(
+            '\t' + JOURNAL_OPTION + " <journal>\tRecords each rename in the journal before it " +
+            "happens"
+        );
+        System.out.println(
+            '\t' + RESUME_OPTION + "\tSkips the files the journal records as renamed, to " +
+            "finish an interrupted run of the same command"
+        );
+        System.out.println(
+            '\t' + SORT_OPTION + ' ' + SORT_ORDERS + "\tSorts all of the files before " +
+            "numbering them. Natural order compares numbers by value, mtime and ctime by the " +
+            "time the file was modified or created, and taken by the time a photo or video " +
+            "was taken"
+        );
+        System.out.println(
+            '\t' + WATCH_OPTION + " <directory>\tAfter renaming the files, keeps renaming the " +
+            "files that arrive in the directory, carrying on the numbering, until stopped"
+        );
+        System.out.println(
+            '\t' + CACHE_OPTION + " <cache>\tKeeps the capture times and digests of the files " +
+            "in the cache, so files that have not changed are not read again"
+        );
+        System.out.println(
+            '\t' + CACHE_SIZE_OPTION + " <entries>\tKeeps the most recently used entries of " +
+            "the cache up to this number, " + MetadataCache.DEFAULT_MAX_ENTRIES + " by default. " +
+            "Each entry takes 120 bytes of cache file"
+        );
+        System.out.println(
+            '\t' + STATS_OPTION + "\tPrints the wall and CPU time of each phase, the files " +
+            "renamed per second, the failures and the rename latencies to standard error"
+        );
+        System.out.println();
+
         System.out.println("Commands are:");
         System.out.println();
 
@@ -60,6 +438,21 @@ public class CommandLine {
         System.out.println(
             '\t' + FileUtilities.RENAME_COMMAND + "\tReplaces a string in the file with another"
         );
+        System.out.println(
+            '\t' + FileUtilities.REGEX_COMMAND + "\tReplaces each match of a regular expression " +
+            "in the file name, $1 and ${name} insert groups"
+        );
+        System.out.println(
+            '\t' + FileUtilities.TEMPLATE_COMMAND + "\tNames the files from a template and a " +
+            "starting number, keeping the extension. {n}, {n:3}, {name}, {size}, " +
+            "{mtime:yyyyMMdd}, {ctime:yyyyMMdd}, {taken:yyyyMMdd_HHmmss} and {hash:16} are " +
+            "replaced"
+        );
+        System.out.println(
+            '\t' + FileUtilities.HASH_COMMAND + "\tNames the files with the first n digits of " +
+            "the SHA-256 of their contents, or all for 0. Files with the same contents as an " +
+            "earlier file keep their name and are listed"
+        );
         System.out.println(
             '\t' + FileUtilities.WIPE_RENAME_NUMBER_COMMAND + "\tWipes the file's name, uses " + 
             "the input name, and numbers the files starting at 1"
@@ -95,6 +488,30 @@ public class CommandLine {
         System.out.println(
             '\t' + FileUtilities.APPEND_STRING_COMMAND + "\tAppends a string to the file(s)"
         );
+        System.out.println();
+
+        System.out.println("Chain commands");
+        System.out.println(
+            '\t' + FileUtilities.CHAIN_COMMAND + " <command> <args>\tRuns the command on the " +
+            "name the command before it computed. Repeat it for each command, then give the " +
+            "files, which are each renamed once. For example " + FileUtilities.CHAIN_COMMAND +
+            ' ' + FileUtilities.REGEX_COMMAND + " IMG_ \"\" " + FileUtilities.CHAIN_COMMAND + ' ' +
+            FileUtilities.NUMBER_APPEND_COMMAND + " _ 1 <files>"
+        );
+        System.out.println();
+
+        System.out.println("Undo a rename");
+        System.out.println(
+            '\t' + UNDO_COMMAND + " <journal>\tReverses the renames recorded in the journal"
+        );
+        System.out.println();
+
+        System.out.println("Run as a server");
+        System.out.println(
+            '\t' + SERVE_COMMAND + "\tRuns jobs read from standard input, one JSON object " +
+            "per line such as {\"id\": \"1\", \"args\": [\"--num-append\", \"_\", \"1\", " +
+            "\"a.jpg\"]}, and writes each rename and the status of each job as JSON lines"
+        );
     }
 
     /**
@@ -117,8 +534,8 @@ public class CommandLine {
         return Integer.parseInt(args[2]);
     }
 
-    private static int rename(String[] args) {
-        if (args.length <= 3) {
+    private static int rename(Options options, String[] args) {
+        if (!hasFiles(options, 3, args)) {
             System.out.println(
                 FileUtilities.RENAME_COMMAND + " requires arguments: <find name> <replace name> " +
                 "<files>"
@@ -126,16 +543,191 @@ public class CommandLine {
             return ERROR;
         }
 
-        List<String> files = getFiles(3, args).collect(Collectors.toList());
-        FileUtilities.renameFiles(
-            files.stream(),
-            FileUtilities.renameReplace(args[1], args[2], files.stream())
+        return renameFiles(
+            options,
+            getFiles(options, 3, args),
+            FileUtilities.renameReplaceOperation(args[1], args[2])
+        );
+    }
+
+    private static int regex(Options options, String[] args) {
+        if (!hasFiles(options, 3, args)) {
+            System.out.println(
+                FileUtilities.REGEX_COMMAND + " requires arguments: <pattern> <replacement> " +
+                "<files>"
+            );
+            return ERROR;
+        }
+
+        final FileOperation operation;
+        try {
+            operation = FileUtilities.regexReplaceOperation(args[1], args[2]);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid " + FileUtilities.REGEX_COMMAND + ": " + e.getMessage());
+            return ERROR;
+        }
+        return renameFiles(options, getFiles(options, 3, args), operation);
+    }
+
+    private static int template(Options options, String[] args) {
+        if (!hasFiles(options, 3, args)) {
+            System.out.println(
+                FileUtilities.TEMPLATE_COMMAND + " requires arguments: <template> " +
+                "<starting number> <files>"
+            );
+            return ERROR;
+        }
+
+        final FileOperation operation;
+        try {
+            operation = FileUtilities.templateOperation(
+                args[1],
+                getStartingNumber(args),
+                options.cache
+            );
+        } catch (IllegalArgumentException e) {
+            System.err.println(
+                "Invalid " + FileUtilities.TEMPLATE_COMMAND + ": " + e.getMessage()
+            );
+            return ERROR;
+        }
+        return renameFiles(options, getFiles(options, 3, args), operation);
+    }
+
+    private static int hash(Options options, String[] args) {
+        if (!hasFiles(options, 2, args)) {
+            System.out.println(
+                FileUtilities.HASH_COMMAND + " requires arguments: <digits> <files>"
+            );
+            return ERROR;
+        }
+
+        final FileOperation operation;
+        try {
+            operation = FileUtilities.hashOperation(Integer.parseInt(args[1]), options.cache);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid " + FileUtilities.HASH_COMMAND + ": " + e.getMessage());
+            return ERROR;
+        }
+        return renameFiles(options, getFiles(options, 2, args), operation);
+    }
+
+    private static int chain(Options options, String[] args) {
+        List<FileOperation> operations = new ArrayList<>();
+        int pos = 0;
+        while (pos < args.length && args[pos].equals(FileUtilities.CHAIN_COMMAND)) {
+            final int count = pos + 1 < args.length ? chainedArgCount(args[pos + 1]) : -1;
+            if (count < 0 || pos + 2 + count > args.length)
+                break;
+
+            final String command = args[pos + 1];
+            try {
+                operations.add(chainedOperation(
+                    command,
+                    Arrays.copyOfRange(args, pos + 2, pos + 2 + count),
+                    options.cache
+                ));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid " + command + ": " + e.getMessage());
+                return ERROR;
+            }
+            pos += 2 + count;
+        }
+
+        if (
+            operations.isEmpty() ||
+            (pos < args.length && args[pos].equals(FileUtilities.CHAIN_COMMAND)) ||
+            !hasFiles(options, pos, args)
+        ) {
+            System.out.println(
+                FileUtilities.CHAIN_COMMAND + " requires arguments: <command> <args> [" +
+                FileUtilities.CHAIN_COMMAND + " <command> <args>]... <files>"
+            );
+            return ERROR;
+        }
+
+        return renameFiles(
+            options,
+            getFiles(options, pos, args),
+            OperationChain.of(operations.toArray(new FileOperation[0]))
         );
-        return SUCCESS;
     }
 
-    private static int wipeRenameNumber(String[] args) {
-        if (args.length <= 2) {
+    /**
+     * @param command A command that can be chained.
+     * @return The number of arguments the command takes before its files, or -1 if it cannot be
+     *     chained.
+     */
+    private static int chainedArgCount(String command) {
+        switch (command) {
+            case FileUtilities.HASH_COMMAND:
+            case FileUtilities.WIPE_RENAME_NUMBER_COMMAND:
+            case FileUtilities.PREPEND_STRING_COMMAND:
+            case FileUtilities.APPEND_STRING_COMMAND:
+                return 1;
+            case FileUtilities.RENAME_COMMAND:
+            case FileUtilities.REGEX_COMMAND:
+            case FileUtilities.TEMPLATE_COMMAND:
+            case FileUtilities.NUMBER_PREPEND_COMMAND:
+            case FileUtilities.NUMBER_APPEND_COMMAND:
+            case FileUtilities.DELETE_PRECEDING_NUM_PREPEND_COMMAND:
+            case FileUtilities.DELETE_ENDING_NUM_APPEND_COMMAND:
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Creates the operation of a chained command.
+     *
+     * @param command A command that can be chained.
+     * @param args    The arguments of the command, without its files.
+     * @param cache   The cache of capture times and digests, or null.
+     * @return The operation computing the new path of a file.
+     * @throws IllegalArgumentException If an argument is invalid.
+     */
+    private static FileOperation chainedOperation(
+        String command,
+        String[] args,
+        MetadataCache cache
+    ) {
+        switch (command) {
+            case FileUtilities.RENAME_COMMAND:
+                return FileUtilities.renameReplaceOperation(args[0], args[1]);
+            case FileUtilities.REGEX_COMMAND:
+                return FileUtilities.regexReplaceOperation(args[0], args[1]);
+            case FileUtilities.TEMPLATE_COMMAND:
+                return FileUtilities.templateOperation(args[0], Integer.parseInt(args[1]), cache);
+            case FileUtilities.HASH_COMMAND:
+                return FileUtilities.hashOperation(Integer.parseInt(args[0]), cache);
+            case FileUtilities.WIPE_RENAME_NUMBER_COMMAND:
+                return FileUtilities.wipeRenameAndNumberOperation(args[0]);
+            case FileUtilities.NUMBER_PREPEND_COMMAND:
+                return FileUtilities.numberPrependOperation(args[0], Integer.parseInt(args[1]), 1);
+            case FileUtilities.NUMBER_APPEND_COMMAND:
+                return FileUtilities.numberAppendOperation(args[0], Integer.parseInt(args[1]), 1);
+            case FileUtilities.DELETE_PRECEDING_NUM_PREPEND_COMMAND:
+                return FileUtilities.deletePrecedingAndNumberPrependOperation(
+                    args[0],
+                    Integer.parseInt(args[1])
+                );
+            case FileUtilities.DELETE_ENDING_NUM_APPEND_COMMAND:
+                return FileUtilities.deleteEndingAndNumberAppendOperation(
+                    args[0],
+                    Integer.parseInt(args[1])
+                );
+            case FileUtilities.PREPEND_STRING_COMMAND:
+                return FileUtilities.prependStringOperation(args[0]);
+            case FileUtilities.APPEND_STRING_COMMAND:
+                return FileUtilities.appendStringOperation(args[0]);
+            default:
+                throw new IllegalArgumentException("It cannot be chained");
+        }
+    }
+
+    private static int wipeRenameNumber(Options options, String[] args) {
+        if (!hasFiles(options, 2, args)) {
             System.out.println(
                 FileUtilities.WIPE_RENAME_NUMBER_COMMAND + " requires arguments: <input string> " +
                 "<files>"
@@ -143,17 +735,15 @@ public class CommandLine {
             return ERROR;
         }
 
-        List<String> files = getFiles(2, args).collect(Collectors.toList());
-        Stream<File> newFiles = FileUtilities.wipeRenameAndNumber(
-            getInputString(args),
-            files.stream()
+        return renameFiles(
+            options,
+            getFiles(options, 2, args),
+            FileUtilities.wipeRenameAndNumberOperation(getInputString(args))
         );
-        FileUtilities.renameFiles(files.stream(), newFiles);
-        return SUCCESS;
     }
 
-    private static int numberPrepend(String[] args) {
-        if (args.length <= 3) {
+    private static int numberPrepend(Options options, String[] args) {
+        if (!hasFiles(options, 3, args)) {
             System.out.println(
                 FileUtilities.NUMBER_PREPEND_COMMAND + " requires arguments: <input string> " +
                 "<starting number> <files>"
@@ -161,18 +751,15 @@ public class CommandLine {
             return ERROR;
         }
 
-        List<String> files = getFiles(3, args).collect(Collectors.toList());
-        Stream<File> newFiles = FileUtilities.numberPrepend(
-            getInputString(args),
-            getStartingNumber(args),
-            files.stream()
+        return renameFiles(
+            options,
+            getFiles(options, 3, args),
+            FileUtilities.numberPrependOperation(getInputString(args), getStartingNumber(args), 1)
         );
-        FileUtilities.renameFiles(files.stream(), newFiles);
-        return SUCCESS;
     }
 
-    private static int numberAppend(String[] args) {
-        if (args.length <= 3) {
+    private static int numberAppend(Options options, String[] args) {
+        if (!hasFiles(options, 3, args)) {
             System.out.println(
                 FileUtilities.NUMBER_APPEND_COMMAND + " requires arguments: <input string> " +
                 "<starting number> <files>"
@@ -180,18 +767,15 @@ public class CommandLine {
             return ERROR;
         }
 
-        List<String> files = getFiles(3, args).collect(Collectors.toList());
-        Stream<File> newFiles = FileUtilities.numberAppend(
-            getInputString(args),
-            getStartingNumber(args),
-            files.stream()
+        return renameFiles(
+            options,
+            getFiles(options, 3, args),
+            FileUtilities.numberAppendOperation(getInputString(args), getStartingNumber(args), 1)
         );
-        FileUtilities.renameFiles(files.stream(), newFiles);
-        return SUCCESS;
     }
 
-    private static int deletePrecedingNumPrepend(String[] args) {
-        if (args.length <= 3) {
+    private static int deletePrecedingNumPrepend(Options options, String[] args) {
+        if (!hasFiles(options, 3, args)) {
             System.out.println(
                 FileUtilities.DELETE_PRECEDING_NUM_PREPEND_COMMAND + " requires arguments: " +
                 "<input string> <starting number> <files>"
@@ -199,19 +783,18 @@ public class CommandLine {
             return ERROR;
         }
 
-        final int startNum = Integer.parseInt(args[2]);
-        List<String> files = getFiles(3, args).collect(Collectors.toList());
-        Stream<File> newFiles = FileUtilities.deletePrecedingAndNumberPrepend(
-            getInputString(args),
-            startNum,
-            files.stream()
+        return renameFiles(
+            options,
+            getFiles(options, 3, args),
+            FileUtilities.deletePrecedingAndNumberPrependOperation(
+                getInputString(args),
+                getStartingNumber(args)
+            )
         );
-        FileUtilities.renameFiles(files.stream(), newFiles);
-        return SUCCESS;
     }
 
-    private static int deleteEndingNumAppend(String[] args) {
-        if (args.length <= 3) {
+    private static int deleteEndingNumAppend(Options options, String[] args) {
+        if (!hasFiles(options, 3, args)) {
             System.out.println(
                 FileUtilities.DELETE_ENDING_NUM_APPEND_COMMAND + " requires arguments: " +
                 "<input string> <starting number> <files>"
@@ -219,19 +802,18 @@ public class CommandLine {
             return ERROR;
         }
 
-        final int startNum = Integer.parseInt(args[2]);
-        List<String> files = getFiles(3, args).collect(Collectors.toList());
-        Stream<File> newFiles = FileUtilities.deleteEndingAndNumberAppend(
-            getInputString(args),
-            startNum,
-            files.stream()
+        return renameFiles(
+            options,
+            getFiles(options, 3, args),
+            FileUtilities.deleteEndingAndNumberAppendOperation(
+                getInputString(args),
+                getStartingNumber(args)
+            )
         );
-        FileUtilities.renameFiles(files.stream(), newFiles);
-        return SUCCESS;
     }
 
-    private static int prepend(String[] args) {
-        if (args.length <= 2) {
+    private static int prepend(Options options, String[] args) {
+        if (!hasFiles(options, 2, args)) {
             System.out.println(
                 FileUtilities.PREPEND_STRING_COMMAND + " requires arguments: <input string> " +
                 "<files>"
@@ -239,14 +821,15 @@ public class CommandLine {
             return ERROR;
         }
 
-        List<String> files = getFiles(2, args).collect(Collectors.toList());
-        Stream<File> newFiles = FileUtilities.prependString(getInputString(args), files.stream());
-        FileUtilities.renameFiles(files.stream(), newFiles);
-        return SUCCESS;
+        return renameFiles(
+            options,
+            getFiles(options, 2, args),
+            FileUtilities.prependStringOperation(getInputString(args))
+        );
     }
 
-    private static int append(String[] args) {
-        if (args.length <= 2) {
+    private static int append(Options options, String[] args) {
+        if (!hasFiles(options, 2, args)) {
             System.out.println(
                 FileUtilities.APPEND_STRING_COMMAND + " requires arguments: " +
                 "<input string> <files>"
@@ -254,22 +837,583 @@ public class CommandLine {
             return ERROR;
         }
 
-        List<String> files = getFiles(2, args).collect(Collectors.toList());
-        Stream<File> newFiles = FileUtilities.appendString(getInputString(args), files.stream());
-        FileUtilities.renameFiles(files.stream(), newFiles);
+        return renameFiles(
+            options,
+            getFiles(options, 2, args),
+            FileUtilities.appendStringOperation(getInputString(args))
+        );
+    }
+
+    /**
+     * Renames the files in batches and reports each file that could not be renamed. Only one batch
+     * of file paths is held in memory at a time, and numbering carries on from one batch to the
+     * next. Each batch is recorded in the journal before it is renamed, and when resuming, the
+     * files the journal records as renamed are skipped without changing the numbering. When
+     * watching a directory, the files that arrive in it are renamed afterwards. The stats are
+     * printed once the files are renamed.
+     *
+     * @param options   The options given on the command line.
+     * @param files     The paths of the files to rename.
+     * @param operation The operation computing the new path of each file.
+     * @return Success if every file was renamed.
+     */
+    private static int renameFiles(Options options, Stream<String> files, FileOperation operation) {
+        if (options.renamer != null)
+            return Math.max(options.renamer.rename(files, operation), runStatus(options));
+
+        final Set<String> renamed = options.resume ?
+            readRenamedSources(options) :
+            Collections.emptySet();
+        final Object job = RenameEvents.get().beginJob();
+        int status = SUCCESS;
+        RenameExecutor executor = null;
+        try (
+            Stream<String> fileStream = files;
+            RenameJournal journal = options.journal == null ?
+                null :
+                RenameJournal.open(options.journal)
+        ) {
+            final ConsoleListener listener = new ConsoleListener(journal);
+            options.stats.enter(RenameStats.Phase.LIST);
+            Iterator<String> fileIterator = fileStream.iterator();
+            List<String> batch = new ArrayList<>();
+            BatchRenamer batches = null;
+            while (BatchRenamer.nextBatch(fileIterator, batch)) {
+                if (batches == null) {
+                    executor = newExecutor(options, batch.get(0));
+                    batches = new BatchRenamer(operation, executor, listener, options.stats);
+                    batches.skip(renamed);
+                }
+                List<RenameResult> results = batches.rename(batch, fileIterator.hasNext());
+                status = Math.max(status, reportFailures(results));
+                options.stats.enter(RenameStats.Phase.LIST);
+            }
+            status = Math.max(status, runStatus(options));
+
+            if (options.watch != null) {
+                if (batches == null) {
+                    executor = newExecutor(options, options.watch);
+                    batches = new BatchRenamer(operation, executor, listener, options.stats);
+                }
+                batches.skip(Collections.emptySet());
+                status = Math.max(status, watch(options, batches));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (executor != null)
+                executor.close();
+            options.stats.stop();
+            if (options.stats.isEnabled())
+                System.err.println(options.stats);
+            RenameEvents.get().endJob(job, null, options.command, status);
+        }
+        return status;
+    }
+
+    /**
+     * @param options The options given on the command line.
+     * @return Error if a directory under the recursive directory could not be listed, so some of
+     *     its files were not renamed, or if a file parked by an interrupted run could not be moved
+     *     to a name of its own.
+     */
+    private static int runStatus(Options options) {
+        if (options.scanner != null && options.scanner.hasFailed())
+            return ERROR;
+
+        return options.parkedLeft ? ERROR : SUCCESS;
+    }
+
+    /**
+     * Runs the rename jobs read from standard input, one JSON object per line, and writes their
+     * results to standard output. Messages meant for the console go to standard error instead, so
+     * standard output only holds results.
+     *
+     * @param options The options given on the command line.
+     * @return Success once standard input ends.
+     */
+    private static int serve(Options options) {
+        final PrintStream results = System.out;
+        System.setOut(System.err);
+        final int workers = options.jobs > 0 ?
+            options.jobs :
+            RenameExecutor.workersFor(new File("").getAbsoluteFile());
+        try (RenameServer server = new RenameServer(
+            results,
+            workers,
+            RenameServer.DEFAULT_CONCURRENT_JOBS,
+            RenameServer.DEFAULT_QUEUE_SIZE
+        )) {
+            server.serve(new BufferedReader(new InputStreamReader(System.in, UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            System.setOut(results);
+        }
         return SUCCESS;
     }
 
+    private static boolean isServerCommand(String command) {
+        return command.equals(UNDO_COMMAND) || command.equals(SERVE_COMMAND);
+    }
+
+    /**
+     * Renames the files that arrive in the watched directory until the directory goes away or the
+     * program is stopped. Numbering carries on from the files renamed before watching and from one
+     * batch of arrivals to the next.
+     *
+     * @param options The options given on the command line.
+     * @param batches Renames the batches of arrivals, numbering on from the files renamed before.
+     * @return Success if every file was renamed.
+     * @throws IOException If the directory cannot be watched.
+     */
+    private static int watch(Options options, BatchRenamer batches) throws IOException {
+        int status = SUCCESS;
+        try (DirectoryWatcher watcher = new DirectoryWatcher(
+            Paths.get(options.watch),
+            WATCH_SETTLE_MILLIS
+        )) {
+            List<String> batch;
+            options.stats.enter(RenameStats.Phase.LIST);
+            while ((batch = watcher.nextBatch(BatchRenamer.BATCH_SIZE)) != null) {
+                if (options.sort != null)
+                    batch = FileSorter.sort(batch, options.sort);
+                List<RenameResult> results = batches.rename(batch, false);
+                for (RenameResult result : results) {
+                    if (result.isSuccess())
+                        watcher.ignore(result.getTarget().toPath());
+                }
+                status = Math.max(status, reportFailures(results));
+                options.stats.enter(RenameStats.Phase.LIST);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return status;
+    }
+
+    /**
+     * @param options The options given on the command line.
+     * @param path    The path of a file that will be renamed.
+     * @return An executor with the number of workers asked for, or suited to the file system.
+     */
+    private static RenameExecutor newExecutor(Options options, String path) {
+        return new RenameExecutor(
+            options.jobs > 0 ? options.jobs : RenameExecutor.workersFor(new File(path))
+        );
+    }
+
+    /**
+     * Reverses the renames recorded in a journal, last rename first. The renames are planned like
+     * any other batch, so an undo never overwrites a file that has since taken one of the old
+     * names. A file renamed more than once in the journal splits the renames into runs that are
+     * undone one after another, so each name is restored in order.
+     *
+     * @param args The command line arguments array.
+     * @return Success if every recorded rename was reversed.
+     */
+    private static int undo(String[] args) {
+        if (args.length != 2) {
+            System.out.println(UNDO_COMMAND + " requires arguments: <journal>");
+            return ERROR;
+        }
+
+        final File journal = new File(args[1]);
+        List<RenameResult> renames;
+        try {
+            renames = RenameJournal.read(journal);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int status = SUCCESS;
+        List<File> sources = new ArrayList<>();
+        List<File> targets = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        Set<String> targetNames = new HashSet<>();
+        try (RenameExecutor executor = new RenameExecutor(RenameExecutor.workersFor(journal))) {
+            for (int i = renames.size() - 1; i >= 0; i--) {
+                if (!renames.get(i).isSuccess())
+                    continue;
+
+                final File source = renames.get(i).getTarget();
+                final File target = renames.get(i).getSource();
+                if (
+                    names.contains(source.getAbsolutePath()) ||
+                    targetNames.contains(target.getAbsolutePath())
+                ) {
+                    status = Math.max(status, undoRenames(executor, sources, targets));
+                    sources.clear();
+                    targets.clear();
+                    names.clear();
+                    targetNames.clear();
+                }
+                sources.add(source);
+                targets.add(target);
+                names.add(source.getAbsolutePath());
+                names.add(target.getAbsolutePath());
+                targetNames.add(target.getAbsolutePath());
+            }
+            return Math.max(status, undoRenames(executor, sources, targets));
+        }
+    }
+
     /**
-     * Gets the files in the command line.
+     * Plans and runs renames that reverse part of a journal.
      *
+     * @param executor Renames the files.
+     * @param sources  The current paths of the files.
+     * @param targets  The paths the files had before they were renamed.
+     * @return Success if every file got its old path back.
+     */
+    private static int undoRenames(
+        RenameExecutor executor,
+        List<File> sources,
+        List<File> targets
+    ) {
+        if (sources.isEmpty())
+            return SUCCESS;
+
+        return reportFailures(executor.execute(RenameSchedule.plan(sources, targets)));
+    }
+
+    /**
+     * Prints each rename that failed and why.
+     *
+     * @param results The outcome of each rename.
+     * @return Success if every rename succeeded.
+     */
+    private static int reportFailures(List<RenameResult> results) {
+        int status = SUCCESS;
+        for (RenameResult result : results) {
+            if (!result.isSuccess()) {
+                System.err.println(
+                    "Could not rename " + result.getSource() + " to " + result.getTarget() + ": " +
+                    result.getFailureReason()
+                );
+                status = ERROR;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Reads the absolute paths of the files a journal records as renamed. A file the journal left
+     * parked under a temporary name, because the run stopped in the middle of a cycle, is moved
+     * back to its old name and renamed again. If its old name has been taken since, the parked
+     * rename is finished by moving the file to the new name the journal records for it, and if
+     * that fails too the run ends with an error.
+     *
+     * @param options The options given on the command line.
+     * @return The paths of the renamed files.
+     */
+    private static Set<String> readRenamedSources(Options options) {
+        if (!options.journal.exists())
+            return Collections.emptySet();
+
+        List<RenameResult> renames;
+        try {
+            renames = RenameJournal.read(options.journal);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Map<String, File> targets = new HashMap<>();
+        for (RenameResult rename : renames)
+            targets.put(rename.getSource().getAbsolutePath(), rename.getTarget());
+
+        Set<String> renamed = new HashSet<>();
+        for (RenameResult rename : renames) {
+            if (!rename.isSuccess())
+                continue;
+
+            final File source = rename.getSource();
+            final File target = rename.getTarget();
+            if (RenameSchedule.isTemporaryFor(source, target) && target.exists()) {
+                if (restoreParked(target, source))
+                    continue;
+                if (!finishParked(target, targets.get(target.getAbsolutePath()), source))
+                    options.parkedLeft = true;
+            }
+            renamed.add(source.getAbsolutePath());
+        }
+        return renamed;
+    }
+
+    /**
+     * Moves a file parked under a temporary name back to its old name, if the name is free.
+     *
+     * @param parked The temporary name of the file.
+     * @param file   The old name of the file.
+     * @return True if the file is back under its old name.
+     */
+    private static boolean restoreParked(File parked, File file) {
+        if (file.exists())
+            return false;
+
+        try {
+            Files.move(parked.toPath(), file.toPath());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not move " + parked + " back to " + file + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Moves a file parked under a temporary name on to the new name it was parked for.
+     *
+     * @param parked The temporary name of the file.
+     * @param target The new name the journal records for the parked file, or null if none.
+     * @param file   The old name of the file, which is taken.
+     * @return True if the file is under its new name.
+     */
+    private static boolean finishParked(File parked, File target, File file) {
+        if (target == null || target.exists()) {
+            System.err.println(
+                file + " was left at " + parked + " by an interrupted run and its name is taken"
+            );
+            return false;
+        }
+
+        try {
+            Files.move(parked.toPath(), target.toPath());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not move " + parked + " to " + target + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks that the command line has the command's arguments and at least one file, or a file
+     * list to read the files from.
+     *
+     * @param options The options given on the command line.
+     * @param start   The position of the first file in the arguments.
+     * @param args    The arguments in the command line.
+     * @return True if there are files to rename.
+     */
+    private static boolean hasFiles(Options options, final int start, String[] args) {
+        return args.length > start || (
+            args.length == start && (
+                options.filesFrom != null ||
+                options.recursive != null ||
+                options.watch != null
+            )
+        );
+    }
+
+    /**
+     * Gets the files in the command line, followed by the files in the file list and the files
+     * under the recursive directory if they were given. When sorting, every file is read before
+     * the stream is returned. The recursive directory is also scanned in full first, since a scan
+     * still listing a directory while it is renamed in batches could find renamed files again.
+     *
+     * @param options
+     *     The options given on the command line.
      * @param start
      *     The start of the command lines to start accumulating file names.
      * @param args
      *     The arguments in the command line.
-     * @return A list with all of the files extracted from the command line.
+     * @return A stream with all of the files extracted from the command line.
      */
-    private static Stream<String> getFiles(final int start, String[] args) {
-        return Arrays.stream(args, start, args.length);
+    private static Stream<String> getFiles(Options options, final int start, String[] args) {
+        Stream<String> files = Arrays.stream(args, start, args.length);
+        if (options.filesFrom != null) {
+            try {
+                files = Stream.concat(
+                    files,
+                    FileListReader.open(options.filesFrom, options.nulDelimited)
+                );
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (options.recursive != null) {
+            final Path root = Paths.get(options.recursive);
+            final int parallelism = options.jobs > 0 ?
+                options.jobs :
+                RenameExecutor.workersFor(root.toFile());
+            options.scanner = new DirectoryScanner(
+                root,
+                options.includes,
+                options.excludes,
+                parallelism
+            );
+            files = Stream.concat(files, options.scanner.stream());
+        }
+        if (options.sort != null || options.recursive != null) {
+            try (Stream<String> listedFiles = files) {
+                String[] paths = listedFiles.toArray(String[]::new);
+                if (options.sort != null)
+                    FileSorter.sort(paths, options.sort, options.cache);
+                files = Arrays.stream(paths);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Renames the files of a command somewhere other than the command line.
+     */
+    interface Renamer {
+        /**
+         * Renames files.
+         *
+         * @param files     The paths of the files to rename.
+         * @param operation The operation computing the new path of each file.
+         * @return Success if every file was renamed.
+         */
+        int rename(Stream<String> files, FileOperation operation);
+
+        /**
+         * Gets the cache kept in a file, shared by every command of the renamer that names the
+         * file. The renamer saves the cache, not the command.
+         *
+         * @param file       The cache file.
+         * @param maxEntries The number of entries the command asks the cache to keep.
+         * @return The opened cache.
+         * @throws IOException If the cache cannot be read or is not a cache.
+         */
+        MetadataCache getCache(File file, int maxEntries) throws IOException;
+    }
+
+    /**
+     * Records each wave of renames in the journal, if there is one, and lists the files left
+     * alone because their contents are the same as another file's, so they can be removed.
+     */
+    private static final class ConsoleListener implements BatchRenamer.Listener {
+        private final RenameJournal journal;
+
+        /**
+         * @param journal The journal recording each rename, or null.
+         */
+        ConsoleListener(RenameJournal journal) {
+            this.journal = journal;
+        }
+
+        @Override
+        public void copies(List<String[]> copies) {
+            for (String[] copy : copies)
+                System.out.println(copy[0] + " has the same contents as " + copy[1]);
+        }
+
+        @Override
+        public void beforeWave(List<File> sources, List<File> targets) {
+            if (journal == null)
+                return;
+
+            try {
+                journal.recordIntents(sources, targets);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void afterWave(List<RenameResult> results) {
+            if (journal == null)
+                return;
+
+            try {
+                journal.recordResults(results);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The options given before the command.
+     */
+    private static final class Options {
+        /**
+         * The number of files renamed at the same time. Zero picks a count for the file system.
+         */
+        private int jobs;
+
+        /**
+         * The list to read more files from, or null to only rename the files in the arguments.
+         */
+        private String filesFrom;
+
+        /**
+         * True if the files in the list are separated by NUL bytes rather than new lines.
+         */
+        private boolean nulDelimited;
+
+        /**
+         * The directory to rename every file under, or null to not scan a directory.
+         */
+        private String recursive;
+
+        /**
+         * The globs that files found under the directory must match one of.
+         */
+        private final List<String> includes = new ArrayList<>();
+
+        /**
+         * The globs that files and directories found under the directory must not match.
+         */
+        private final List<String> excludes = new ArrayList<>();
+
+        /**
+         * Scans the directory given by {@link #recursive}, or null until the files are read.
+         */
+        private DirectoryScanner scanner;
+
+        /**
+         * True if a file parked by an interrupted run was left under its temporary name.
+         */
+        private boolean parkedLeft;
+
+        /**
+         * The journal recording each rename, or null to not keep a journal.
+         */
+        private File journal;
+
+        /**
+         * True to skip the files the journal records as already renamed.
+         */
+        private boolean resume;
+
+        /**
+         * The order to sort the files in, or null to rename them in the order they are given.
+         */
+        private FileSorter.Order sort;
+
+        /**
+         * The directory to keep renaming arriving files in, or null to not watch a directory.
+         */
+        private String watch;
+
+        /**
+         * Renames the files of the command instead of renaming them here, or null.
+         */
+        private Renamer renamer;
+
+        /**
+         * The file caching capture times and digests between runs, or null to not keep one.
+         */
+        private File cacheFile;
+
+        /**
+         * The number of entries the cache keeps when it is saved.
+         */
+        private int cacheSize = MetadataCache.DEFAULT_MAX_ENTRIES;
+
+        /**
+         * Records the time spent in each phase and the renames, disabled unless asked for.
+         */
+        private RenameStats stats = RenameStats.disabled();
+
+        /**
+         * The command being run.
+         */
+        private String command;
+
+        /**
+         * The cache opened from the cache file, or null.
+         */
+        private MetadataCache cache;
     }
 }
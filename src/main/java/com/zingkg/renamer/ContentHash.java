@@ -0,0 +1,153 @@
+package com.zingkg.renamer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The digests of the contents of a list of files, read in bulk. Each file is read once from start
+ * to end through a large direct buffer each thread reuses, and the files are read by a bounded pool
+ * of threads sized to their file system.
+ */
+final class ContentHash {
+    /**
+     * The digest used when none is named.
+     */
+    static final String DEFAULT_ALGORITHM = "SHA-256";
+
+    /**
+     * The size of each read. Large reads keep the disk streaming between digest updates.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[][] digests;
+
+    private ContentHash(int count) {
+        digests = new byte[count][];
+    }
+
+    /**
+     * Checks that a digest algorithm exists.
+     *
+     * @param algorithm The name of a {@link MessageDigest} algorithm.
+     * @return The length of the algorithm's digests in bytes.
+     * @throws IllegalArgumentException If there is no such algorithm.
+     */
+    static int digestLength(String algorithm) {
+        return newDigest(algorithm).getDigestLength();
+    }
+
+    /**
+     * @param algorithm The name of a {@link MessageDigest} algorithm, in any case or alias.
+     * @return The standard name of the algorithm, such as SHA-256 for sha-256.
+     * @throws IllegalArgumentException If there is no such algorithm.
+     */
+    static String standardName(String algorithm) {
+        final MessageDigest digest = newDigest(algorithm);
+        final Provider provider = digest.getProvider();
+        final Provider.Service service = provider == null ?
+            null :
+            provider.getService("MessageDigest", digest.getAlgorithm());
+        return service == null ?
+            digest.getAlgorithm().toUpperCase(Locale.ROOT) :
+            service.getAlgorithm();
+    }
+
+    /**
+     * Reads the digests of files with a thread count suited to their file system.
+     *
+     * @param paths     The paths of the files.
+     * @param algorithm The name of a {@link MessageDigest} algorithm.
+     * @param cache     The cache of digests read before, or null to read every file.
+     * @return The digests of the files, in the order of the paths.
+     * @throws IllegalArgumentException If there is no such algorithm.
+     */
+    static ContentHash read(List<String> paths, String algorithm, MetadataCache cache) {
+        final MessageDigest prototype = newDigest(algorithm);
+        final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+            try {
+                return (MessageDigest) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                return newDigest(algorithm);
+            }
+        });
+        final ContentHash hash = new ContentHash(paths.size());
+        FileAttributes.forEachFile(
+            paths.size(),
+            FileAttributes.parallelismFor(paths),
+            i -> {
+                final Path path = Paths.get(paths.get(i));
+                hash.digests[i] = cache == null ?
+                    digest(path, digests.get()) :
+                    cache.getDigest(path, algorithm, p -> digest(p, digests.get()));
+            }
+        );
+        return hash;
+    }
+
+    /**
+     * @param file The position of a file.
+     * @return The digest of the file's contents, or null if it could not be read.
+     */
+    byte[] getDigest(int file) {
+        return digests[file];
+    }
+
+    /**
+     * Writes the start of a file's digest in lower case hexadecimal.
+     *
+     * @param out    The buffer to write to.
+     * @param file   The position of a file.
+     * @param length The number of hexadecimal digits to write, or 0 for all of them.
+     * @return False if the file could not be read.
+     */
+    boolean appendHex(StringBuilder out, int file, int length) {
+        final byte[] digest = digests[file];
+        if (digest == null)
+            return false;
+
+        final int digits = length == 0 ? digest.length * 2 : length;
+        for (int i = 0; i < digits; i++) {
+            final int b = digest[i / 2];
+            out.append(HEX[(i % 2 == 0 ? b >> 4 : b) & 0xF]);
+        }
+        return true;
+    }
+
+    private static byte[] digest(Path path, MessageDigest digest) {
+        final ByteBuffer buffer = BUFFER.get();
+        digest.reset();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return digest.digest();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown digest algorithm: " + algorithm, e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.zingkg.renamer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Finds the files of a run that would take the new name of an earlier file with the same contents,
+ * so they keep their name rather than collide with it. A file with the same contents as an earlier
+ * file but a different new name is renamed as usual.
+ *
+ * The new name and digest of the first file given each new name are remembered across batches, up
+ * to a bound, after which the least recently given names are forgotten. A copy of a forgotten file
+ * is not left alone but collides with it, and is rejected like any other rename onto an existing
+ * file.
+ */
+final class CopyFinder {
+    /**
+     * The most new names remembered by default.
+     */
+    static final int MAX_TARGETS = 1 << 18;
+
+    /**
+     * The files of the last batch found to be copies.
+     */
+    private static final class Batch {
+        private final int firstIndex;
+
+        /**
+         * The new name each file would collide on, or null where the file is not a copy.
+         */
+        private final String[] targets;
+
+        Batch(int firstIndex, int size) {
+            this.firstIndex = firstIndex;
+            this.targets = new String[size];
+        }
+    }
+
+    /**
+     * The digest of the first file given each new name, least recently given first.
+     */
+    private final Map<String, byte[]> digests;
+    private volatile Batch batch;
+    private volatile List<String[]> copies = Collections.emptyList();
+
+    /**
+     * Creates a finder remembering up to {@link #MAX_TARGETS} new names.
+     */
+    CopyFinder() {
+        this(MAX_TARGETS);
+    }
+
+    /**
+     * Creates a finder.
+     *
+     * @param maxTargets The most new names to remember.
+     */
+    CopyFinder(int maxTargets) {
+        this.digests = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxTargets;
+            }
+        };
+    }
+
+    /**
+     * Finds the copies of a batch. While a file is named here, it is not yet a copy, so the naming
+     * operation may ask {@link #copyOf} and get its new name.
+     *
+     * @param paths      The current paths of the files of the batch.
+     * @param firstIndex The position of the first file of the batch among all of the files.
+     * @param digest     The digest of the file at each position of the batch, or null for none.
+     * @param naming     Computes the new path of each file.
+     */
+    void find(
+        List<String> paths,
+        int firstIndex,
+        IntFunction<byte[]> digest,
+        FileOperation naming
+    ) {
+        final Batch found = new Batch(firstIndex, paths.size());
+        batch = found;
+        List<String[]> foundCopies = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            final byte[] contents = digest.apply(i);
+            if (contents == null)
+                continue;
+
+            final String path = paths.get(i);
+            final String target = naming.apply(path, firstIndex + i);
+            final byte[] earlier = digests.putIfAbsent(target, contents);
+            if (earlier != null && Arrays.equals(earlier, contents)) {
+                found.targets[i] = target;
+                foundCopies.add(new String[]{path, target});
+            }
+        }
+        copies = foundCopies;
+    }
+
+    /**
+     * @param index The position of a file of the last batch.
+     * @return The new path of the earlier file with the same contents and new name, or null if the
+     *     file is not a copy.
+     */
+    String copyOf(int index) {
+        final Batch current = batch;
+        final int row = current == null ? -1 : index - current.firstIndex;
+        return row < 0 || row >= current.targets.length ? null : current.targets[row];
+    }
+
+    /**
+     * @return The copies of the last batch, each followed by the new path of the earlier file.
+     */
+    List<String[]> getCopies() {
+        return copies;
+    }
+}
@@ -0,0 +1,237 @@
+package com.zingkg.renamer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds the files under a directory. Each directory is listed by its own fork join task, so idle
+ * threads steal whole subtrees from busy ones. The tasks run on a pool shared with other scans and
+ * reads of files. Found files are handed to the consumer of the stream through a bounded queue as
+ * soon as they are seen, which means the order of the files is not the order of the tree.
+ *
+ * Glob patterns without a separator match the file name, and patterns with a separator match the
+ * path relative to the root. A directory matching an exclude pattern is not scanned.
+ *
+ * The scan does not stop at files it cannot read. An entry whose attributes cannot be read is
+ * skipped with a warning, and a directory that cannot be listed is reported on the console and
+ * remembered, so the caller can fail the run once the files that were found are renamed.
+ */
+final class DirectoryScanner {
+    /**
+     * The most found files waiting for the consumer of the stream.
+     */
+    private static final int QUEUE_SIZE = 8 * 1024;
+
+    /**
+     * How long a task waits for room in the queue before checking if the scan was stopped.
+     */
+    private static final long OFFER_MILLIS = 100;
+
+    /**
+     * Marks the end of the scan in the queue.
+     */
+    private static final String END = new String("end of scan");
+
+    private final Path root;
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final List<Boolean> includesByName = new ArrayList<>();
+    private final List<Boolean> excludesByName = new ArrayList<>();
+    private final int parallelism;
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * Creates a directory scanner.
+     *
+     * @param root         The directory to scan.
+     * @param includeGlobs Only files matching one of these are found. Empty finds every file.
+     * @param excludeGlobs Files and directories matching one of these are skipped.
+     * @param parallelism  The number of threads listing directories.
+     */
+    DirectoryScanner(
+        Path root,
+        List<String> includeGlobs,
+        List<String> excludeGlobs,
+        int parallelism
+    ) {
+        this.root = root;
+        this.parallelism = parallelism;
+        final FileSystem fileSystem = root.getFileSystem();
+        final String separator = fileSystem.getSeparator();
+        for (String glob : includeGlobs) {
+            includes.add(fileSystem.getPathMatcher("glob:" + glob));
+            includesByName.add(!glob.contains(separator) && !glob.contains("/"));
+        }
+        for (String glob : excludeGlobs) {
+            excludes.add(fileSystem.getPathMatcher("glob:" + glob));
+            excludesByName.add(!glob.contains(separator) && !glob.contains("/"));
+        }
+    }
+
+    /**
+     * Starts scanning and returns the found files as they are seen. Closing the stream stops the
+     * scan. Directories that cannot be listed are left out of the stream; see {@link #hasFailed}.
+     *
+     * @return A stream of the paths of the found files.
+     */
+    Stream<String> stream() {
+        final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        ReaderPools.get(parallelism).execute(() -> {
+            try {
+                new ScanTask(root, queue).invoke();
+            } finally {
+                put(queue, END);
+            }
+        });
+
+        Iterator<String> iterator = new Iterator<String>() {
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while scanning " + root, e);
+                    }
+                }
+                if (next == END)
+                    return false;
+                return true;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                final String path = next;
+                next = null;
+                return path;
+            }
+        };
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL),
+            false
+        ).onClose(() -> stopped.set(true));
+    }
+
+    /**
+     * @return True if a directory could not be listed, so some files may be missing from the scan.
+     */
+    boolean hasFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @param file The path of a file under the root.
+     * @return True if the file matches the include patterns and none of the exclude patterns.
+     */
+    private boolean accepts(Path file) {
+        if (matchesAny(file, excludes, excludesByName))
+            return false;
+
+        return includes.isEmpty() || matchesAny(file, includes, includesByName);
+    }
+
+    private boolean matchesAny(Path path, List<PathMatcher> matchers, List<Boolean> byName) {
+        for (int i = 0; i < matchers.size(); i++) {
+            final Path matched = byName.get(i) ? path.getFileName() : root.relativize(path);
+            if (matched != null && matchers.get(i).matches(matched))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hands a found file to the consumer of the stream, waiting for room in the queue until the
+     * stream is closed.
+     *
+     * @param queue The queue of found files.
+     * @param path  The path of the file.
+     */
+    private void put(BlockingQueue<String> queue, String path) {
+        try {
+            while (!stopped.get() && !queue.offer(path, OFFER_MILLIS, TimeUnit.MILLISECONDS))
+                continue;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lists one directory, forking a task for each subdirectory.
+     */
+    private final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final BlockingQueue<String> queue;
+
+        ScanTask(Path directory, BlockingQueue<String> queue) {
+            this.directory = directory;
+            this.queue = queue;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (stopped.get())
+                        break;
+
+                    final BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(
+                            entry,
+                            BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS
+                        );
+                    } catch (IOException e) {
+                        System.err.println("Skipping " + entry + ": " + e);
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        if (!matchesAny(entry, excludes, excludesByName)) {
+                            ScanTask subtask = new ScanTask(entry, queue);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        }
+                    } else if (attributes.isRegularFile() && accepts(entry)) {
+                        put(queue, entry.toString());
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                System.err.println("Could not list " + directory + ": " + e);
+                failed.set(true);
+            }
+
+            for (ScanTask subtask : subtasks)
+                subtask.join();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.zingkg.renamer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out the files that arrive in a directory in batches. A file is ready once no event has
+ * been seen for it for the settle time, so a file that is still being written is not handed out,
+ * and the files of a burst that settle together are handed out together.
+ *
+ * The files a caller renames into the directory show up as new files, so the caller tells the
+ * watcher to ignore them. The watcher remembers those files and the files it handed out, with
+ * their file keys where the file system has them, for as long as they stay in the directory. If
+ * the file system drops events, the directory is listed again and every file it does not
+ * remember is handed out.
+ */
+final class DirectoryWatcher implements Closeable {
+    /**
+     * Stands in for the file key of a file on a file system without file keys.
+     */
+    private static final Object NO_KEY = new Object();
+
+    private final Path directory;
+    private final long settleNanos;
+    private final WatchService service;
+
+    /**
+     * The files waiting to settle, by path, with the time of their last event, in arrival order.
+     */
+    private final Map<Path, Long> pending = new LinkedHashMap<>();
+
+    /**
+     * The files handed out or put in the directory by the caller, by path, with their file keys,
+     * or {@link #NO_KEY} where the file system has none.
+     */
+    private final Map<Path, Object> known = new HashMap<>();
+
+    /**
+     * Starts watching a directory.
+     *
+     * @param directory    The directory to watch.
+     * @param settleMillis How long a file must go without events before it is handed out.
+     * @throws IOException If the directory cannot be watched.
+     */
+    DirectoryWatcher(Path directory, long settleMillis) throws IOException {
+        this.directory = directory.toAbsolutePath();
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.service = directory.getFileSystem().newWatchService();
+        this.directory.register(
+            service,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE
+        );
+    }
+
+    /**
+     * Waits for files to arrive and settle.
+     *
+     * @param maxFiles The most files to hand out at once.
+     * @return The paths of the files that arrived, in the order they arrived, or null once the
+     *     directory can no longer be watched.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    List<String> nextBatch(int maxFiles) throws InterruptedException {
+        while (true) {
+            List<String> ready = takeSettled(maxFiles);
+            if (!ready.isEmpty())
+                return ready;
+
+            final WatchKey key;
+            try {
+                key = pending.isEmpty() ?
+                    service.take() :
+                    service.poll(settleNanos, TimeUnit.NANOSECONDS);
+            } catch (ClosedWatchServiceException e) {
+                return null;
+            }
+            if (key != null && !handle(key))
+                return null;
+        }
+    }
+
+    /**
+     * Ignores a file for as long as it stays in the directory, because the caller put it there.
+     *
+     * @param path The path of the file.
+     */
+    void ignore(Path path) {
+        final Path absolute = path.toAbsolutePath();
+        if (directory.equals(absolute.getParent()))
+            known.put(absolute, fileKey(absolute));
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    private List<String> takeSettled(int maxFiles) {
+        List<String> ready = new ArrayList<>();
+        final long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Long>> entries = pending.entrySet().iterator();
+        while (entries.hasNext() && ready.size() < maxFiles) {
+            Map.Entry<Path, Long> entry = entries.next();
+            if (now - entry.getValue() < settleNanos)
+                continue;
+
+            entries.remove();
+            if (Files.isRegularFile(entry.getKey(), LinkOption.NOFOLLOW_LINKS)) {
+                known.put(entry.getKey(), fileKey(entry.getKey()));
+                ready.add(entry.getKey().toString());
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Records the events of a key and of any other keys already queued.
+     *
+     * @return False if the directory can no longer be watched.
+     */
+    private boolean handle(WatchKey key) {
+        for (WatchKey next = key; next != null; next = service.poll()) {
+            final long now = System.nanoTime();
+            for (WatchEvent<?> event : next.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    System.err.println("Missed events in " + directory + ", listing it again");
+                    rescan(now);
+                    continue;
+                }
+
+                final Path path = directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    if (!isKnown(path))
+                        pending.put(path, now);
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+                    pending.computeIfPresent(path, (p, time) -> now);
+                } else {
+                    pending.remove(path);
+                    known.remove(path);
+                }
+            }
+            if (!next.reset())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lists the directory after events were dropped. Files that are not known are waited on as
+     * if they had just arrived, and known files that are gone are forgotten.
+     *
+     * @param now The time of the rescan.
+     */
+    void rescan(long now) {
+        Set<Path> present = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                present.add(entry);
+                if (
+                    !pending.containsKey(entry) &&
+                    !isKnown(entry) &&
+                    Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS)
+                ) {
+                    pending.put(entry, now);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            System.err.println("Could not list " + directory + ": " + e);
+            return;
+        }
+        known.keySet().retainAll(present);
+    }
+
+    /**
+     * @param path The path of a file in the directory.
+     * @return True if the file was handed out or put there by the caller and has not been
+     *     replaced since.
+     */
+    private boolean isKnown(Path path) {
+        final Object key = known.get(path);
+        if (key == null)
+            return false;
+        if (key == NO_KEY || key.equals(fileKey(path)))
+            return true;
+
+        known.remove(path);
+        return false;
+    }
+
+    /**
+     * @param path The path of a file.
+     * @return The key identifying the file, or {@link #NO_KEY} if the file system has none or
+     *     the file is gone.
+     */
+    private static Object fileKey(Path path) {
+        try {
+            final Object key = Files.readAttributes(
+                path,
+                BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS
+            ).fileKey();
+            return key == null ? NO_KEY : key;
+        } catch (IOException e) {
+            return NO_KEY;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The attributes of a list of files, read in bulk. Each attribute is a column of primitive longs
+ * indexed by the position of the file in the list, rather than an object per file. Reading
+ * attributes pays a round trip per file on a network file system, so the files are read by a
+ * bounded pool of threads instead of one after another.
+ *
+ * A file whose attributes cannot be read has all of its columns set to {@link #MISSING}.
+ */
+final class FileAttributes {
+    /**
+     * The value of every column of a file whose attributes could not be read.
+     */
+    static final long MISSING = Long.MIN_VALUE;
+
+    private final long[] modified;
+    private final long[] created;
+    private final long[] size;
+
+    private FileAttributes(int count) {
+        modified = new long[count];
+        created = new long[count];
+        size = new long[count];
+    }
+
+    /**
+     * Reads the attributes of files with a thread count suited to their file system.
+     *
+     * @param paths The paths of the files.
+     * @return The attributes of the files, in the order of the paths.
+     */
+    static FileAttributes read(List<String> paths) {
+        return read(paths, parallelismFor(paths));
+    }
+
+    /**
+     * Reads the attributes of files.
+     *
+     * @param paths       The paths of the files.
+     * @param parallelism The number of threads reading attributes.
+     * @return The attributes of the files, in the order of the paths.
+     */
+    static FileAttributes read(List<String> paths, int parallelism) {
+        final FileAttributes attributes = new FileAttributes(paths.size());
+        forEachFile(paths.size(), parallelism, i -> attributes.load(i, paths.get(i)));
+        return attributes;
+    }
+
+    /**
+     * @param paths The paths of files about to be read.
+     * @return The number of threads suited to reading the files' file system.
+     */
+    static int parallelismFor(List<String> paths) {
+        return paths.isEmpty() ? 1 : RenameExecutor.workersFor(new File(paths.get(0)));
+    }
+
+    /**
+     * Reads each of a list of files on a bounded pool of threads, returning once all are read. The
+     * pool is shared with every other read of the same thread count.
+     *
+     * @param count       The number of files.
+     * @param parallelism The number of threads reading files.
+     * @param reader      Reads the file at a position in the list.
+     */
+    static void forEachFile(int count, int parallelism, IntConsumer reader) {
+        final ForkJoinPool pool = ReaderPools.get(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(reader)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading files", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return The number of files.
+     */
+    int size() {
+        return size.length;
+    }
+
+    /**
+     * @param file The position of a file.
+     * @return The time the file was last modified in milliseconds since the epoch, or
+     *     {@link #MISSING}.
+     */
+    long getModified(int file) {
+        return modified[file];
+    }
+
+    /**
+     * @param file The position of a file.
+     * @return The time the file was created in milliseconds since the epoch, or
+     *     {@link #MISSING}. File systems that do not record it report the modified time instead.
+     */
+    long getCreated(int file) {
+        return created[file];
+    }
+
+    /**
+     * @param file The position of a file.
+     * @return The size of the file in bytes, or {@link #MISSING}.
+     */
+    long getSize(int file) {
+        return size[file];
+    }
+
+    private void load(int file, String path) {
+        try {
+            BasicFileAttributes basic = Files.readAttributes(
+                Paths.get(path),
+                BasicFileAttributes.class
+            );
+            modified[file] = basic.lastModifiedTime().toMillis();
+            created[file] = basic.creationTime().toMillis();
+            size[file] = basic.size();
+        } catch (IOException | RuntimeException e) {
+            modified[file] = MISSING;
+            created[file] = MISSING;
+            size[file] = MISSING;
+        }
+    }
+}
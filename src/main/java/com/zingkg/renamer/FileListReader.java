@@ -0,0 +1,182 @@
+package com.zingkg.renamer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a list of file paths from a channel one path at a time, so only the paths that have not
+ * been renamed yet are held in memory. Paths are separated by new lines or by NUL bytes.
+ */
+final class FileListReader implements Iterator<String>, Closeable {
+    /**
+     * The source name that reads the list from standard input.
+     */
+    static final String STANDARD_INPUT = "-";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final boolean closeChannel;
+    private final byte delimiter;
+    private final Charset charset = Charset.defaultCharset();
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] record = new byte[256];
+    private int recordLength;
+    private boolean endOfInput;
+    private String next;
+
+    /**
+     * Creates a file list reader.
+     *
+     * @param channel      The channel holding the list.
+     * @param closeChannel True to close the channel when the reader is closed.
+     * @param nulDelimited True if paths are separated by NUL bytes, false for new lines.
+     */
+    FileListReader(ReadableByteChannel channel, boolean closeChannel, boolean nulDelimited) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.delimiter = nulDelimited ? (byte) 0 : (byte) '\n';
+        buffer.limit(0);
+    }
+
+    /**
+     * Opens a lazy stream of the paths listed in a file or on standard input. Closing the stream
+     * closes the file.
+     *
+     * @param source       The path of the list, or "-" for standard input.
+     * @param nulDelimited True if paths are separated by NUL bytes, false for new lines.
+     * @return A stream of the listed paths.
+     * @throws IOException If the list cannot be opened.
+     */
+    static Stream<String> open(String source, boolean nulDelimited) throws IOException {
+        final FileListReader reader;
+        if (source.equals(STANDARD_INPUT)) {
+            reader = new FileListReader(Channels.newChannel(System.in), false, nulDelimited);
+        } else {
+            reader = new FileListReader(
+                FileChannel.open(Paths.get(source), StandardOpenOption.READ),
+                true,
+                nulDelimited
+            );
+        }
+        return reader.stream();
+    }
+
+    /**
+     * @return A lazy stream of the remaining paths. Closing the stream closes the reader.
+     */
+    Stream<String> stream() {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+            false
+        ).onClose(this::closeUnchecked);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null)
+            next = readRecord();
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        final String path = next;
+        next = null;
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeChannel)
+            channel.close();
+    }
+
+    private void closeUnchecked() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads up to the next delimiter. Empty records are skipped.
+     *
+     * @return The next path, or null at the end of the input.
+     */
+    private String readRecord() {
+        while (true) {
+            final byte[] bytes = buffer.array();
+            final int limit = buffer.limit();
+            int pos = buffer.position();
+            final int start = pos;
+            while (pos < limit && bytes[pos] != delimiter)
+                pos++;
+            appendToRecord(bytes, start, pos - start);
+
+            if (pos < limit) {
+                buffer.position(pos + 1);
+                final String path = takeRecord();
+                if (path != null)
+                    return path;
+            } else if (endOfInput) {
+                buffer.position(limit);
+                return takeRecord();
+            } else {
+                fill();
+            }
+        }
+    }
+
+    private void fill() {
+        buffer.clear();
+        try {
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            if (read < 0)
+                endOfInput = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+    }
+
+    private void appendToRecord(byte[] bytes, int offset, int length) {
+        if (recordLength + length > record.length)
+            record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + length));
+        System.arraycopy(bytes, offset, record, recordLength, length);
+        recordLength += length;
+    }
+
+    /**
+     * @return The path held in the record, or null if it is empty.
+     */
+    private String takeRecord() {
+        int length = recordLength;
+        if (delimiter == '\n' && length > 0 && record[length - 1] == '\r')
+            length--;
+        recordLength = 0;
+        return length == 0 ? null : new String(record, 0, length, charset);
+    }
+}
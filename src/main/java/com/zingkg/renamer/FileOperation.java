@@ -0,0 +1,42 @@
+package com.zingkg.renamer;
+
+import java.util.List;
+
+/**
+ * Computes the new path of a file from its current path and its position in the batch being
+ * renamed. Numbering operations derive their number from the position rather than from a shared
+ * counter, so the same batch is numbered the same way no matter how it is split across threads.
+ */
+@FunctionalInterface
+public interface FileOperation {
+    /**
+     * Computes the new path of a file.
+     *
+     * @param path  The current path of the file.
+     * @param index The position of the file in its batch, starting at 0.
+     * @return The new path of the file.
+     */
+    String apply(String path, int index);
+
+    /**
+     * Called with each batch of files before they are applied, so an operation that names files
+     * by their metadata can read it for the whole batch at once. Does nothing by default.
+     *
+     * @param paths      The current paths of the files.
+     * @param firstIndex The position of the first of the files in the batch.
+     * @throws java.io.UncheckedIOException If the metadata cannot be read.
+     */
+    default void prepare(List<String> paths, int firstIndex) {
+    }
+
+    /**
+     * Fuses this operation with another into one, so a file is renamed once to the name the other
+     * operation gives the name this one computes.
+     *
+     * @param next The operation applied to the names this operation computes.
+     * @return The operation applying both.
+     */
+    default FileOperation andThen(FileOperation next) {
+        return OperationChain.of(this, next);
+    }
+}
@@ -0,0 +1,208 @@
+package com.zingkg.renamer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sorts file paths before they are numbered. Natural order compares runs of digits by their
+ * value, so "img2" comes before "img10", and ignores case.
+ *
+ * Instead of parsing the digit runs in every comparison, each path is turned once into a sort
+ * key that plain string comparison puts in natural order: letters are lower cased, and each run of
+ * digits becomes a marker, its length without leading zeros and the digits. The original path is
+ * kept after the key behind a NUL, which no path contains, so equal keys fall back on the path
+ * and the path is recovered from the sorted key without a second array. Large lists are sorted in
+ * parallel.
+ *
+ * The attribute and capture time orders read them for all of the files in bulk first, so each
+ * comparison looks up two longs rather than asking the file system. Files with equal values, and
+ * files without one, are in natural order, the files without one last.
+ */
+final class FileSorter {
+    /**
+     * The orders the files can be sorted in.
+     */
+    enum Order {
+        /**
+         * Natural order, with numbers compared by value.
+         */
+        NATURAL,
+
+        /**
+         * The order of the paths' characters.
+         */
+        LEXICAL,
+
+        /**
+         * Natural order from last to first.
+         */
+        REVERSE,
+
+        /**
+         * The time the files were last modified, oldest first.
+         */
+        MTIME,
+
+        /**
+         * The time the files were created, oldest first.
+         */
+        CTIME,
+
+        /**
+         * The size of the files, smallest first.
+         */
+        SIZE,
+
+        /**
+         * The time the photos or videos were taken, oldest first.
+         */
+        TAKEN;
+
+        /**
+         * @param name The name of an order, in any case.
+         * @return The order with that name.
+         * @throws IllegalArgumentException If there is no order with that name.
+         */
+        static Order parse(String name) {
+            for (Order order : values()) {
+                if (order.name().equalsIgnoreCase(name))
+                    return order;
+            }
+            throw new IllegalArgumentException("Unknown sort order: " + name);
+        }
+    }
+
+    /**
+     * Separates the sort key from the path.
+     */
+    private static final char KEY_END = '\0';
+
+    /**
+     * Starts a run of digits in a sort key. Digits never appear in a key unless they follow the
+     * marker, and the marker sorts among the other characters where the digits would have.
+     */
+    private static final char NUMBER = '0';
+
+    private FileSorter() {
+    }
+
+    /**
+     * Sorts file paths.
+     *
+     * @param paths The paths to sort. Sorted in place.
+     * @param order The order to sort the paths in.
+     */
+    static void sort(String[] paths, Order order) {
+        sort(paths, order, null);
+    }
+
+    /**
+     * Sorts file paths.
+     *
+     * @param paths The paths to sort. Sorted in place.
+     * @param order The order to sort the paths in.
+     * @param cache The cache of capture times read before, or null to read every file.
+     */
+    static void sort(String[] paths, Order order, MetadataCache cache) {
+        if (order == Order.LEXICAL) {
+            Arrays.parallelSort(paths);
+            return;
+        }
+
+        naturalSort(paths);
+        if (order == Order.REVERSE)
+            Collections.reverse(Arrays.asList(paths));
+        else if (order != Order.NATURAL)
+            attributeSort(paths, order, cache);
+    }
+
+    private static void naturalSort(String[] paths) {
+        for (int i = 0; i < paths.length; i++)
+            paths[i] = naturalKey(paths[i]) + KEY_END + paths[i];
+        Arrays.parallelSort(paths);
+        for (int i = 0; i < paths.length; i++)
+            paths[i] = paths[i].substring(paths[i].indexOf(KEY_END) + 1);
+    }
+
+    /**
+     * Sorts paths that are already in natural order by one of their attributes. The sort is
+     * stable, so files with equal attributes stay in natural order.
+     */
+    private static void attributeSort(String[] paths, Order order, MetadataCache cache) {
+        final long[] keys = new long[paths.length];
+        if (order == Order.TAKEN) {
+            final MediaMetadata media = MediaMetadata.read(Arrays.asList(paths), cache);
+            for (int i = 0; i < paths.length; i++)
+                keys[i] = media.getTaken(i);
+        } else {
+            final FileAttributes attributes = FileAttributes.read(Arrays.asList(paths));
+            for (int i = 0; i < paths.length; i++) {
+                keys[i] = order == Order.MTIME ?
+                    attributes.getModified(i) :
+                    order == Order.CTIME ? attributes.getCreated(i) : attributes.getSize(i);
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == FileAttributes.MISSING)
+                keys[i] = Long.MAX_VALUE;
+        }
+
+        Integer[] rows = new Integer[paths.length];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = i;
+        Arrays.parallelSort(rows, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        final String[] natural = paths.clone();
+        for (int i = 0; i < rows.length; i++)
+            paths[i] = natural[rows[i]];
+    }
+
+    /**
+     * Sorts file paths.
+     *
+     * @param paths The paths to sort.
+     * @param order The order to sort the paths in.
+     * @return The sorted paths.
+     */
+    static List<String> sort(List<String> paths, Order order) {
+        String[] sorted = paths.toArray(new String[0]);
+        sort(sorted, order);
+        return Arrays.asList(sorted);
+    }
+
+    /**
+     * @param path A file path.
+     * @return A key whose string order is the natural order of the path.
+     */
+    static String naturalKey(String path) {
+        StringBuilder key = new StringBuilder(path.length() + 8);
+        int pos = 0;
+        while (pos < path.length()) {
+            final char c = path.charAt(pos);
+            if (!isDigit(c)) {
+                key.append(Character.toLowerCase(c));
+                pos++;
+                continue;
+            }
+
+            final int end = digitsEnd(path, pos);
+            while (pos < end - 1 && path.charAt(pos) == '0')
+                pos++;
+            key.append(NUMBER).append((char) (end - pos)).append(path, pos, end);
+            pos = end;
+        }
+        return key.toString();
+    }
+
+    private static int digitsEnd(String path, int start) {
+        int end = start;
+        while (end < path.length() && isDigit(path.charAt(end)))
+            end++;
+        return end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
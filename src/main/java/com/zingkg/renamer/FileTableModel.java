@@ -0,0 +1,178 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A table of files with a "File" and a "Path" column. Only the path of each row is stored, in a
+ * plain array, and the file name is cut out of it when a cell is painted, so a table of a million
+ * files costs little more than the paths themselves. Rows are added and removed in bulk with one
+ * event per change instead of one per row.
+ *
+ * A row may have no path yet, which shows as empty cells.
+ */
+final class FileTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMNS = {"File", "Path"};
+
+    private String[] paths = new String[0];
+    private int size;
+
+    @Override
+    public int getRowCount() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        final String path = getPath(row);
+        if (path == null)
+            return "";
+
+        return column == 0 ? path.substring(path.lastIndexOf(File.separatorChar) + 1) : path;
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The path shown in the row, or null if it has none yet.
+     */
+    String getPath(int row) {
+        if (row >= size)
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+
+        return paths[row];
+    }
+
+    /**
+     * @return The paths of the rows in order. Rows without a path are skipped.
+     */
+    Stream<String> stream() {
+        return Arrays.stream(paths, 0, size).filter(path -> path != null);
+    }
+
+    /**
+     * Appends rows.
+     *
+     * @param newPaths The paths of the new rows.
+     */
+    void addAll(Collection<String> newPaths) {
+        if (newPaths.isEmpty())
+            return;
+
+        final int first = size;
+        ensureCapacity(size + newPaths.size());
+        for (String path : newPaths)
+            paths[size++] = path;
+        fireTableRowsInserted(first, size - 1);
+    }
+
+    /**
+     * Sets the paths of consecutive rows. Rows whose path does not change are left alone, and one
+     * update event covers the rows that did change.
+     *
+     * @param first    The index of the first row to set.
+     * @param newPaths The new paths of the rows.
+     * @return The number of rows whose path changed.
+     */
+    int setPaths(int first, List<String> newPaths) {
+        if (first + newPaths.size() > size)
+            throw new IndexOutOfBoundsException(
+                "Rows up to " + (first + newPaths.size()) + " of " + size
+            );
+
+        int firstChanged = -1;
+        int lastChanged = -1;
+        int changed = 0;
+        for (int i = 0; i < newPaths.size(); i++) {
+            final String path = newPaths.get(i);
+            if (!path.equals(paths[first + i])) {
+                paths[first + i] = path;
+                if (firstChanged < 0)
+                    firstChanged = first + i;
+                lastChanged = first + i;
+                changed++;
+            }
+        }
+        if (changed > 0)
+            fireTableRowsUpdated(firstChanged, lastChanged);
+        return changed;
+    }
+
+    /**
+     * Adds rows without a path or removes rows at the end until the table has the given number of
+     * rows.
+     *
+     * @param rows The new number of rows.
+     */
+    void setRowCount(int rows) {
+        if (rows > size) {
+            final int first = size;
+            ensureCapacity(rows);
+            size = rows;
+            fireTableRowsInserted(first, rows - 1);
+        } else if (rows < size) {
+            final int last = size - 1;
+            Arrays.fill(paths, rows, size, null);
+            size = rows;
+            fireTableRowsDeleted(rows, last);
+        }
+    }
+
+    /**
+     * Removes rows, keeping the order of the others.
+     *
+     * @param rows The indexes of the rows to remove.
+     */
+    void removeRows(BitSet rows) {
+        if (rows.isEmpty())
+            return;
+
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (!rows.get(row))
+                paths[kept++] = paths[row];
+        }
+        Arrays.fill(paths, kept, size, null);
+        size = kept;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Removes every row.
+     */
+    void clear() {
+        if (size == 0)
+            return;
+
+        final int last = size - 1;
+        paths = new String[0];
+        size = 0;
+        fireTableRowsDeleted(0, last);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > paths.length)
+            paths = Arrays.copyOf(paths, Math.max(capacity, paths.length + paths.length / 2));
+    }
+}
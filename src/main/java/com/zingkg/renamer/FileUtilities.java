@@ -1,9 +1,22 @@
 package com.zingkg.renamer;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.zingkg.renamer.RenamePlan.DIRECTORY;
+import static com.zingkg.renamer.RenamePlan.EXTENSION;
+import static com.zingkg.renamer.RenamePlan.NAME;
+import static com.zingkg.renamer.RenamePlan.NAME_WITHOUT_LEADING_DIGITS;
+import static com.zingkg.renamer.RenamePlan.NUMBER;
+import static com.zingkg.renamer.RenamePlan.STEM;
+import static com.zingkg.renamer.RenamePlan.STEM_WITHOUT_TRAILING_DIGITS;
+import static com.zingkg.renamer.RenamePlan.literal;
 
 public final class FileUtilities {
     /**
@@ -47,26 +60,25 @@ public final class FileUtilities {
     public static final String WIPE_RENAME_NUMBER_COMMAND = "--wipe-rename-number";
 
     /**
-     * A const with all of the ASCII digits.
+     * The console command to trigger the regular expression replace function.
      */
-    private static final String DIGITS = "1234567890";
+    public static final String REGEX_COMMAND = "--regex";
 
     /**
-     * Returns a new append path for the file given a path, name, and count.
-     *
-     * @param path  The path of the new file.
-     * @param name  The new name of the file.
-     * @param count The count for the file.
-     * @return The complete path for the new file.
+     * The console command to trigger the name template function.
      */
-    private static String newAppendPath(String path, String name, int count) {
-        final int lastDirPos = findLastDirPos(path);
-        final int extPos = path.lastIndexOf('.');
-        if (extPos >= 0)
-            return path.substring(0, lastDirPos + 1) + name + count + path.substring(extPos);
-        else
-            return path.substring(0, lastDirPos + 1) + name + count;
-    }
+    public static final String TEMPLATE_COMMAND = "--template";
+
+    /**
+     * The console command to trigger the content hash function.
+     */
+    public static final String HASH_COMMAND = "--hash";
+
+    /**
+     * The console command to fuse several of the other commands into one rename. It is given
+     * before each of the commands.
+     */
+    public static final String CHAIN_COMMAND = "--op";
 
     /**
      * Rename each of the files and return a stream with their new paths. The count is ascending.
@@ -77,8 +89,7 @@ public final class FileUtilities {
      * @return A stream with new files and their paths.
      */
     public static Stream<File> renameAppendAsc(String name, int startNum, Stream<String> files) {
-        AtomicInteger count = new AtomicInteger(startNum);
-        return files.map(file -> new File(newAppendPath(file, name, count.getAndIncrement())));
+        return apply(renameAppendOperation(name, startNum, 1), files);
     }
 
     /**
@@ -90,8 +101,7 @@ public final class FileUtilities {
      * @return A stream with new files and their paths.
      */
     public static Stream<File> renameAppendDesc(String name, int startNum, Stream<String> files) {
-        AtomicInteger count = new AtomicInteger(startNum);
-        return files.map(file -> new File(newAppendPath(file, name, count.getAndDecrement())));
+        return apply(renameAppendOperation(name, startNum, -1), files);
     }
 
     /**
@@ -107,12 +117,62 @@ public final class FileUtilities {
         String replaceName,
         Stream<String> files
     ) {
-        return files.filter(file -> file.contains(findName)).map(file -> {
-            final int pos = file.indexOf(findName);
-            return new File(
-                file.substring(0, pos) + replaceName + file.substring(pos + findName.length())
-            );
-        });
+        Stream<String> matchingFiles = files.filter(file -> file.contains(findName));
+        return apply(renameReplaceOperation(findName, replaceName), matchingFiles);
+    }
+
+    /**
+     * Renames files by replacing each match of a regular expression in the file name. The
+     * directories of the files are never matched. Files whose name has no match keep their name.
+     *
+     * @param regex       The regular expression to find in the file names.
+     * @param replacement Replaces each match. $n and ${name} insert a group of the match.
+     * @param files       The file paths to rename.
+     * @return A stream of the renamed files.
+     * @throws java.util.regex.PatternSyntaxException If the regular expression is invalid.
+     * @throws IllegalArgumentException               If the replacement refers to a missing group.
+     */
+    public static Stream<File> regexReplace(
+        String regex,
+        String replacement,
+        Stream<String> files
+    ) {
+        return apply(regexReplaceOperation(regex, replacement), files);
+    }
+
+    /**
+     * Renames files from a template such as "{mtime:yyyyMMdd}_{n}", which replaces the file name
+     * and keeps the extension. The attributes the template uses are read for all of the files
+     * before any is named.
+     *
+     * @param template The template of the new file names.
+     * @param startNum The number given to the first file.
+     * @param files    The file paths to rename.
+     * @return A stream of the renamed files.
+     * @throws IllegalArgumentException If the template is invalid.
+     * @see NameTemplate
+     */
+    public static Stream<File> template(String template, int startNum, Stream<String> files) {
+        FileOperation operation = templateOperation(template, startNum);
+        List<String> paths;
+        try (Stream<String> stream = files) {
+            paths = stream.collect(Collectors.toList());
+        }
+        operation.prepare(paths, 0);
+        return apply(operation, paths.stream());
+    }
+
+    /**
+     * Renames files to the SHA-256 digest of their contents, keeping the extension. A file with
+     * the same contents as an earlier file keeps its name.
+     *
+     * @param length The number of hexadecimal digits of the digest to use, or 0 for all of them.
+     * @param files  The file paths to rename.
+     * @return A stream of the renamed files.
+     * @throws IllegalArgumentException If the length is longer than the digest.
+     */
+    public static Stream<File> hash(int length, Stream<String> files) {
+        return template(hashTemplate(length), 0, files);
     }
 
     /**
@@ -128,14 +188,7 @@ public final class FileUtilities {
         final int startNum,
         Stream<String> files
     ) {
-        AtomicInteger count = new AtomicInteger(startNum);
-        return files.map(file -> {
-            final int lastDirPos = findLastDirPos(file);
-            return new File(
-                file.substring(0, lastDirPos + 1) + count.getAndIncrement() + inputString +
-                file.substring(lastDirPos + 1)
-            );
-        });
+        return apply(numberPrependOperation(inputString, startNum, 1), files);
     }
 
     /**
@@ -151,14 +204,7 @@ public final class FileUtilities {
         final int startNum,
         Stream<String> files
     ) {
-        AtomicInteger count = new AtomicInteger(startNum);
-        return files.map(file -> {
-            final int lastDirPos = findLastDirPos(file);
-            return new File(
-                file.substring(0, lastDirPos + 1) + count.getAndDecrement() + inputString +
-                file.substring(lastDirPos + 1)
-            );
-        });
+        return apply(numberPrependOperation(inputString, startNum, -1), files);
     }
 
     /**
@@ -174,18 +220,7 @@ public final class FileUtilities {
         int startNum,
         Stream<String> files
     ) {
-        AtomicInteger count = new AtomicInteger(startNum);
-        return files.map(file -> {
-            final int dotPos = file.lastIndexOf('.');
-            final String newFileName;
-            if (dotPos != -1) {
-                newFileName = file.substring(0, dotPos) + inputString + count.getAndIncrement() +
-                file.substring(dotPos);
-            } else {
-                newFileName = file + inputString + count.getAndIncrement();
-            }
-            return new File(newFileName);
-        });
+        return apply(numberAppendOperation(inputString, startNum, 1), files);
     }
 
     /**
@@ -201,18 +236,7 @@ public final class FileUtilities {
         int startNum,
         Stream<String> files
     ) {
-        AtomicInteger count = new AtomicInteger(startNum);
-        return files.map(file -> {
-            final int dotPos = file.lastIndexOf('.');
-            final String newFileName;
-            if (dotPos != -1) {
-                newFileName = file.substring(0, dotPos) + inputString + count.getAndDecrement() +
-                file.substring(dotPos);
-            } else {
-                newFileName = file + inputString + count.getAndDecrement();
-            }
-            return new File(newFileName);
-        });
+        return apply(numberAppendOperation(inputString, startNum, -1), files);
     }
 
     /**
@@ -228,17 +252,7 @@ public final class FileUtilities {
         int startNum,
         Stream<String> files
     ) {
-        AtomicInteger count = new AtomicInteger(startNum);
-        return files.map(file -> {
-            final int lastDirPos = findLastDirPos(file);
-            final String filePath = file.substring(0, lastDirPos + 1);
-            final String fileName = file.substring(lastDirPos + 1);
-            final int notDigitPos = findFirstNotOf(fileName, DIGITS);
-            final String moddedName = count.getAndIncrement() + inputString +
-                fileName.substring(notDigitPos);
-            final String newFileName = filePath + moddedName;
-            return new File(newFileName);
-        });
+        return apply(deletePrecedingAndNumberPrependOperation(inputString, startNum), files);
     }
 
     /**
@@ -254,23 +268,7 @@ public final class FileUtilities {
         int startNum,
         Stream<String> files
     ) {
-        AtomicInteger count = new AtomicInteger(startNum);
-        return files.map(file -> {
-            final int dotPos = file.lastIndexOf('.');
-            final String fileName;
-            final String extension;
-            if (dotPos != -1) {
-                fileName = file.substring(0, dotPos);
-                extension = file.substring(dotPos);
-            } else {
-                fileName = file;
-                extension = "";
-            }
-            final int numPos = findLastNotOf(fileName, DIGITS);
-            final String newFileName = fileName.substring(0, numPos + 1) + inputString +
-                count.getAndIncrement() + extension;
-            return new File(newFileName);
-        });
+        return apply(deleteEndingAndNumberAppendOperation(inputString, startNum), files);
     }
 
     /**
@@ -281,12 +279,7 @@ public final class FileUtilities {
      * @return A stream with new paths and names.
      */
     public static Stream<File> prependString(String inputString, Stream<String> files) {
-        return files.map(file -> {
-            final int lastDirPos = findLastDirPos(file);
-            final String newFile = file.substring(0, lastDirPos + 1) + inputString +
-                file.substring(lastDirPos + 1);
-            return new File(newFile);
-        });
+        return apply(prependStringOperation(inputString), files);
     }
 
     /**
@@ -297,16 +290,7 @@ public final class FileUtilities {
      * @return A stream of files with new paths and name.
      */
     public static Stream<File> appendString(String inputString, Stream<String> files) {
-        return files.map(file -> {
-            final int dotPos = file.lastIndexOf('.');
-            final String newFile;
-            if (dotPos != -1)
-                newFile = file.substring(0, dotPos) + inputString + file.substring(dotPos);
-            else
-                newFile = file + inputString;
-
-            return new File(newFile);
-        });
+        return apply(appendStringOperation(inputString), files);
     }
 
     /**
@@ -317,94 +301,266 @@ public final class FileUtilities {
      * @return A stream of files with new paths and names.
      */
     public static Stream<File> wipeRenameAndNumber(String inputString, Stream<String> files) {
-        AtomicInteger count = new AtomicInteger(1);
-        return files.map(file -> {
-            final int dotPos = file.lastIndexOf('.');
-            final String newFile;
-            if (dotPos != -1)
-                newFile = inputString + count.getAndIncrement() + file.substring(dotPos);
-            else
-                newFile = inputString + count.getAndIncrement();
+        return apply(wipeRenameAndNumberOperation(inputString), files);
+    }
 
-            return new File(newFile);
-        });
+    /**
+     * The operation behind {@link #renameAppendAsc} and {@link #renameAppendDesc}.
+     *
+     * @param name     The name of the file(s).
+     * @param startNum The number given to the first file.
+     * @param step     1 to count up, -1 to count down.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation renameAppendOperation(String name, int startNum, int step) {
+        return new RenamePlan(startNum, step, DIRECTORY, literal(name), NUMBER, EXTENSION);
     }
 
-    public static void renameFiles(Stream<String> currentFileStrings, Stream<File> newFiles) {
-        Iterator<File> currentFileIterator = currentFileStrings.map(File::new).iterator();
-        Iterator<File> newFileIterator = newFiles.iterator();
-        while (currentFileIterator.hasNext() && newFileIterator.hasNext())
-            currentFileIterator.next().renameTo(newFileIterator.next());
-    }
-
-    /**
-     * Finds the first not of in a string from a sequence.
-     * @param string   The string to be searched up.
-     * @param sequence The sequence to search in the string.
-     * @return The int where the position of the item was found.
-     */
-    private static int findFirstNotOf(String string, String sequence) {
-        final int stringLength = string.length();
-        char[] sequenceCharArray = sequence.toCharArray();
-        for (int i = 0; i < stringLength; i++) {
-            boolean found = false;
-            for (final char sequenceChar : sequenceCharArray) {
-                if (string.charAt(i) == sequenceChar) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found)
-                return i;
-        }
+    /**
+     * The operation behind {@link #renameReplace}. Paths without the find name are unchanged.
+     *
+     * @param findName    The name to find and replace.
+     * @param replaceName Replaces the findName with this name.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation renameReplaceOperation(String findName, String replaceName) {
+        return (file, index) -> {
+            final int pos = file.indexOf(findName);
+            if (pos < 0)
+                return file;
 
-        return -1;
+            return file.substring(0, pos) + replaceName + file.substring(pos + findName.length());
+        };
     }
 
     /**
-     * Finds the last not of in a string from a sequence of string.
+     * The operation behind {@link #regexReplace}.
      *
-     * @param string   The string to search up.
-     * @param sequence The sequence to search in the string.
-     * @return The int where the position of the item was found.
+     * @param regex       The regular expression to find in the file names.
+     * @param replacement Replaces each match.
+     * @return The operation computing the new path of a file.
      */
-    private static int findLastNotOf(String string, String sequence) {
-        char[] sequenceCharArray = sequence.toCharArray();
-        for (int i = string.length() - 1; i >= 0; i--) {
-            boolean found = false;
-            for (final char sequenceChar : sequenceCharArray) {
-                if (string.charAt(i) == sequenceChar) {
-                    found = true;
-                    break;
-                }
-            }
+    static FileOperation regexReplaceOperation(String regex, String replacement) {
+        return new RenamePlan(DIRECTORY, new NameReplacement(Pattern.compile(regex), replacement));
+    }
 
-            if (!found)
-                return i;
-        }
+    /**
+     * The operation behind {@link #template}. It must be prepared with each batch of files before
+     * it is applied to them.
+     *
+     * @param template The template of the new file names.
+     * @param startNum The number given to the first file.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation templateOperation(String template, int startNum) {
+        return templateOperation(template, startNum, null);
+    }
+
+    /**
+     * The operation behind {@link #template}, looking up capture times and digests in a cache.
+     *
+     * @param template The template of the new file names.
+     * @param startNum The number given to the first file.
+     * @param cache    The cache of capture times and digests read before, or null.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation templateOperation(String template, int startNum, MetadataCache cache) {
+        return new NameTemplate(template, startNum, cache);
+    }
+
+    /**
+     * The operation behind {@link #hash}. It must be prepared with each batch of files before it
+     * is applied to them.
+     *
+     * @param length The number of hexadecimal digits of the digest to use, or 0 for all of them.
+     * @param cache  The cache of digests read before, or null to read every file.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation hashOperation(int length, MetadataCache cache) {
+        return new NameTemplate(hashTemplate(length), 0, cache);
+    }
 
-        return -1;
+    private static String hashTemplate(int length) {
+        return "{hash:" + ContentHash.DEFAULT_ALGORITHM + ':' + length + '}';
     }
 
     /**
-     * Checks if we are on windows.
+     * The operation behind {@link #numberPrepend} and {@link #numberPrependDesc}.
      *
-     * @return True if the OS is windows. False if not on windows.
+     * @param inputString The input string to prepend to file names.
+     * @param startNum    The number given to the first file.
+     * @param step        1 to count up, -1 to count down.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation numberPrependOperation(String inputString, int startNum, int step) {
+        return new RenamePlan(startNum, step, DIRECTORY, NUMBER, literal(inputString), NAME);
+    }
+
+    /**
+     * The operation behind {@link #numberAppend} and {@link #numberAppendDesc}.
+     *
+     * @param inputString The input string to append to the files.
+     * @param startNum    The number given to the first file.
+     * @param step        1 to count up, -1 to count down.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation numberAppendOperation(String inputString, int startNum, int step) {
+        return new RenamePlan(
+            startNum,
+            step,
+            DIRECTORY,
+            STEM,
+            literal(inputString),
+            NUMBER,
+            EXTENSION
+        );
+    }
+
+    /**
+     * The operation behind {@link #deletePrecedingAndNumberPrepend}.
+     *
+     * @param inputString The input string to prepend to the files.
+     * @param startNum    The number given to the first file.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation deletePrecedingAndNumberPrependOperation(
+        String inputString,
+        int startNum
+    ) {
+        return new RenamePlan(
+            startNum,
+            1,
+            DIRECTORY,
+            NUMBER,
+            literal(inputString),
+            NAME_WITHOUT_LEADING_DIGITS
+        );
+    }
+
+    /**
+     * The operation behind {@link #deleteEndingAndNumberAppend}.
+     *
+     * @param inputString The input string to append to the files.
+     * @param startNum    The number given to the first file.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation deleteEndingAndNumberAppendOperation(String inputString, int startNum) {
+        return new RenamePlan(
+            startNum,
+            1,
+            DIRECTORY,
+            STEM_WITHOUT_TRAILING_DIGITS,
+            literal(inputString),
+            NUMBER,
+            EXTENSION
+        );
+    }
+
+    /**
+     * The operation behind {@link #prependString}.
+     *
+     * @param inputString The input string to prepend to the files.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation prependStringOperation(String inputString) {
+        return new RenamePlan(DIRECTORY, literal(inputString), NAME);
+    }
+
+    /**
+     * The operation behind {@link #appendString}.
+     *
+     * @param inputString The input string to append to the file names.
+     * @return The operation computing the new path of a file.
+     */
+    static FileOperation appendStringOperation(String inputString) {
+        return new RenamePlan(DIRECTORY, STEM, literal(inputString), EXTENSION);
+    }
+
+    /**
+     * The operation behind {@link #wipeRenameAndNumber}.
+     *
+     * @param inputString The input string to replace the file name.
+     * @return The operation computing the new path of a file.
      */
-    private static boolean isWindows() {
-        return System.getProperty("os.name").toLowerCase().contains("win");
+    static FileOperation wipeRenameAndNumberOperation(String inputString) {
+        return new RenamePlan(1, 1, literal(inputString), NUMBER, EXTENSION);
     }
 
     /**
-     * Finds the last directory position based on the OS.
+     * Applies an operation to each of the files. Each file is given its position in the stream
+     * rather than a number from a shared counter, so the returned stream numbers the files the
+     * same way when it is run in parallel.
      *
-     * @param fileName The fileName that is to be queried on.
-     * @return The integer value where the directory is found.
+     * @param operation The operation computing the new path of each file.
+     * @param files     The file paths to rename.
+     * @return A stream of files with new paths and names, in the order of the given files.
      */
-    private static int findLastDirPos(String fileName) {
-        if (isWindows())
-            return fileName.lastIndexOf('\\');
-        else
-            return fileName.lastIndexOf('/');
+    public static Stream<File> apply(FileOperation operation, Stream<String> files) {
+        return apply(operation, 0, files);
+    }
+
+    /**
+     * Applies an operation to each of the files, where the files continue a batch that has
+     * already had some of its files renamed.
+     *
+     * @param operation  The operation computing the new path of each file.
+     * @param firstIndex The position of the first of the files in the batch.
+     * @param files      The file paths to rename.
+     * @return A stream of files with new paths and names, in the order of the given files.
+     */
+    public static Stream<File> apply(
+        FileOperation operation,
+        int firstIndex,
+        Stream<String> files
+    ) {
+        return StreamSupport.stream(
+            new IndexedSpliterator(files.spliterator(), operation, firstIndex),
+            files.isParallel()
+        ).onClose(files::close);
+    }
+
+    /**
+     * Renames each of the current files to the new file at the same position, one at a time.
+     *
+     * @param currentFileStrings The paths of the files to rename.
+     * @param newFiles           The new paths of the files.
+     * @return The outcome of each rename in the order they ran, followed by the renames that were
+     *     rejected.
+     */
+    public static List<RenameResult> renameFiles(
+        Stream<String> currentFileStrings,
+        Stream<File> newFiles
+    ) {
+        return renameFiles(currentFileStrings, newFiles, 1);
+    }
+
+    /**
+     * Renames each of the current files to the new file at the same position with a number of
+     * concurrent workers. The renames are ordered so that no file is overwritten, see
+     * {@link RenameSchedule}.
+     *
+     * @param currentFileStrings The paths of the files to rename.
+     * @param newFiles           The new paths of the files.
+     * @param jobs               The number of files renamed at the same time.
+     * @return The outcome of each rename in the order they ran, followed by the renames that were
+     *     rejected.
+     */
+    public static List<RenameResult> renameFiles(
+        Stream<String> currentFileStrings,
+        Stream<File> newFiles,
+        int jobs
+    ) {
+        List<File> sources = new ArrayList<>();
+        List<File> targets = new ArrayList<>();
+        Iterator<String> currentFileIterator = currentFileStrings.iterator();
+        Iterator<File> newFileIterator = newFiles.iterator();
+        while (currentFileIterator.hasNext() && newFileIterator.hasNext()) {
+            sources.add(new File(currentFileIterator.next()));
+            targets.add(newFileIterator.next());
+        }
+
+        try (RenameExecutor executor = new RenameExecutor(jobs)) {
+            return executor.execute(RenameSchedule.plan(sources, targets));
+        }
     }
 }
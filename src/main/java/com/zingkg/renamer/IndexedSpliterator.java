@@ -0,0 +1,65 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Applies a file operation to each path of a source spliterator along with the path's position.
+ * Splits only when the source knows the exact size of each split, which is what lets every half
+ * know the position of its first path.
+ */
+final class IndexedSpliterator implements Spliterator<File> {
+    private final Spliterator<String> source;
+    private final FileOperation operation;
+    private int index;
+
+    /**
+     * Creates an indexed spliterator.
+     *
+     * @param source    The paths of the files.
+     * @param operation The operation computing the new path of each file.
+     * @param index     The position of the first path in the source.
+     */
+    IndexedSpliterator(Spliterator<String> source, FileOperation operation, int index) {
+        this.source = source;
+        this.operation = operation;
+        this.index = index;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super File> action) {
+        return source.tryAdvance(path -> action.accept(new File(operation.apply(path, index++))));
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super File> action) {
+        source.forEachRemaining(
+            path -> action.accept(new File(operation.apply(path, index++)))
+        );
+    }
+
+    @Override
+    public Spliterator<File> trySplit() {
+        if (!source.hasCharacteristics(SUBSIZED))
+            return null;
+
+        final Spliterator<String> prefix = source.trySplit();
+        if (prefix == null)
+            return null;
+
+        final IndexedSpliterator split = new IndexedSpliterator(prefix, operation, index);
+        index += (int) prefix.getExactSizeIfKnown();
+        return split;
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return (source.characteristics() & (ORDERED | SIZED | SUBSIZED)) | NONNULL;
+    }
+}
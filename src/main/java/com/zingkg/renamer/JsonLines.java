@@ -0,0 +1,235 @@
+package com.zingkg.renamer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the one line JSON objects the server speaks. Objects become maps, arrays
+ * become lists, strings stay strings, numbers keep their text, and true, false and null become
+ * booleans and null. Values nested more than {@link #MAX_DEPTH} deep are refused, so a line of
+ * brackets cannot exhaust the stack of the parser.
+ */
+final class JsonLines {
+    /**
+     * The most objects and arrays nested in each other.
+     */
+    static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int pos;
+    private int depth;
+
+    private JsonLines(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a JSON object.
+     *
+     * @param line The text of the object.
+     * @return The members of the object in order.
+     * @throws IllegalArgumentException If the line is not a JSON object or is nested too deeply.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> parseObject(String line) {
+        JsonLines parser = new JsonLines(line);
+        parser.skipSpace();
+        if (!parser.peek('{'))
+            throw parser.error("Expected an object");
+
+        final Object value = parser.parseValue();
+        parser.skipSpace();
+        if (parser.pos != line.length())
+            throw parser.error("Unexpected text after the object");
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Writes a string as a JSON string.
+     *
+     * @param out   The buffer to write to.
+     * @param value The string, or null.
+     * @return The buffer.
+     */
+    static StringBuilder appendString(StringBuilder out, String value) {
+        if (value == null)
+            return out.append("null");
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        out.append(String.format("\\u%04x", (int) c));
+                    else
+                        out.append(c);
+            }
+        }
+        return out.append('"');
+    }
+
+    private Object parseValue() {
+        skipSpace();
+        if (pos >= text.length())
+            throw error("Expected a value");
+
+        final char c = text.charAt(pos);
+        if (c == '{' || c == '[') {
+            if (++depth > MAX_DEPTH)
+                throw error("Nested more than " + MAX_DEPTH + " deep");
+
+            final Object value = c == '{' ? parseMembers() : parseElements();
+            depth--;
+            return value;
+        }
+        if (c == '"')
+            return parseString();
+        if (text.startsWith("true", pos))
+            return literal("true", Boolean.TRUE);
+        if (text.startsWith("false", pos))
+            return literal("false", Boolean.FALSE);
+        if (text.startsWith("null", pos))
+            return literal("null", null);
+        return parseNumber();
+    }
+
+    private Map<String, Object> parseMembers() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        pos++;
+        skipSpace();
+        if (consume('}'))
+            return members;
+
+        do {
+            skipSpace();
+            if (!peek('"'))
+                throw error("Expected a member name");
+            final String name = parseString();
+            skipSpace();
+            if (!consume(':'))
+                throw error("Expected ':'");
+            members.put(name, parseValue());
+            skipSpace();
+        } while (consume(','));
+        if (!consume('}'))
+            throw error("Expected '}'");
+        return members;
+    }
+
+    private List<Object> parseElements() {
+        List<Object> elements = new ArrayList<>();
+        pos++;
+        skipSpace();
+        if (consume(']'))
+            return elements;
+
+        do {
+            elements.add(parseValue());
+            skipSpace();
+        } while (consume(','));
+        if (!consume(']'))
+            throw error("Expected ']'");
+        return elements;
+    }
+
+    private String parseString() {
+        StringBuilder value = new StringBuilder();
+        pos++;
+        while (pos < text.length()) {
+            final char c = text.charAt(pos++);
+            if (c == '"')
+                return value.toString();
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (pos >= text.length())
+                break;
+
+            final char escaped = text.charAt(pos++);
+            switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length())
+                        throw error("Incomplete escape");
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    value.append(escaped);
+            }
+        }
+        throw error("Unclosed string");
+    }
+
+    private String parseNumber() {
+        final int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0)
+            pos++;
+        if (pos == start)
+            throw error("Unexpected '" + text.charAt(pos) + "'");
+        return text.substring(start, pos);
+    }
+
+    private Object literal(String word, Object value) {
+        pos += word.length();
+        return value;
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+            pos++;
+    }
+
+    private boolean peek(char c) {
+        return pos < text.length() && text.charAt(pos) == c;
+    }
+
+    private boolean consume(char c) {
+        if (!peek(c))
+            return false;
+
+        pos++;
+        return true;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+}
@@ -0,0 +1,15 @@
+package com.zingkg.renamer;
+
+import java.util.List;
+
+/**
+ * An operation that leaves a file alone when its contents are the same as an earlier file's, so
+ * the two do not collide on the same new name.
+ */
+interface KeepsCopies {
+    /**
+     * @return The files of the last prepared batch that keep their name because their contents
+     *     are the same as an earlier file's, each followed by the new path of the earlier file.
+     */
+    List<String[]> getCopies();
+}
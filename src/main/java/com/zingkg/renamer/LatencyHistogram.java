@@ -0,0 +1,87 @@
+package com.zingkg.renamer;
+
+/**
+ * Counts durations in buckets that grow with the duration, so recording is an array increment
+ * and any percentile is within about 6% of the true value however long the durations get. Values
+ * below 32 nanoseconds have a bucket each; above that each power of two is split into 16 buckets.
+ */
+final class LatencyHistogram {
+    /**
+     * The number of buckets each power of two is split into.
+     */
+    private static final int SUB_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    /**
+     * One bucket for each value below twice the sub bucket count, then a row of sub buckets for
+     * each larger power of two up to the largest long.
+     */
+    private final long[] counts = new long[(65 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+    private long count;
+    private long max;
+
+    /**
+     * Counts a duration.
+     *
+     * @param nanos The duration. Negative durations are counted as zero.
+     */
+    void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+        counts[bucket(value)]++;
+        count++;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @return The number of durations counted.
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The longest duration counted, or 0 if there are none.
+     */
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100.
+     * @return A duration that at least that percent of the durations are no longer than, rounded
+     *     up to the end of its bucket but no further than the longest duration. 0 if there are
+     *     none.
+     */
+    long getPercentile(double percentile) {
+        if (count == 0)
+            return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank)
+                return Math.min(highestValue(bucket), max);
+        }
+        return max;
+    }
+
+    private static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS)
+            return (int) value;
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS)
+            return bucket;
+
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        final long highest = ((subBucket + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
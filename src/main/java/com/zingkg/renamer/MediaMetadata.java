@@ -0,0 +1,326 @@
+package com.zingkg.renamer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * The time photos and videos were taken, read in bulk from their headers. Only the start of each
+ * file is read, with positional reads into a buffer each thread reuses, so a batch costs a few
+ * small reads per file rather than reading whole files or starting another program.
+ *
+ * The capture time comes from the EXIF DateTimeOriginal of JPEG and TIFF based raw files, falling
+ * back on the EXIF DateTime, and from the movie header of MP4 and QuickTime files. EXIF times have
+ * no zone and are taken to be in the system's zone. A file without a capture time is
+ * {@link FileAttributes#MISSING}.
+ */
+final class MediaMetadata {
+    /**
+     * The number of bytes read from the start of each file. An EXIF segment is at most 64 KiB.
+     */
+    static final int HEADER_SIZE = 64 * 1024;
+
+    private static final int EXIF = 0x45786966;
+    private static final int TIFF_MAGIC = 42;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int EXIF_DATE_LENGTH = 19;
+
+    private static final int MOOV = box("moov");
+    private static final int MVHD = box("mvhd");
+
+    /**
+     * The types of the boxes an MP4 or QuickTime file starts with.
+     */
+    private static final int[] FIRST_BOXES = {
+        box("ftyp"), MOOV, box("mdat"), box("wide"), box("free"), box("skip")
+    };
+
+    /**
+     * The seconds from 1904, when QuickTime times start, to 1970.
+     */
+    private static final long QUICKTIME_EPOCH_OFFSET = 2082844800L;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(HEADER_SIZE));
+
+    private final long[] taken;
+
+    private MediaMetadata(int count) {
+        taken = new long[count];
+    }
+
+    /**
+     * Reads the capture times of files with a thread count suited to their file system.
+     *
+     * @param paths The paths of the files.
+     * @param cache The cache of capture times read before, or null to read every file.
+     * @return The capture times of the files, in the order of the paths.
+     */
+    static MediaMetadata read(List<String> paths, MetadataCache cache) {
+        final MediaMetadata metadata = new MediaMetadata(paths.size());
+        FileAttributes.forEachFile(
+            paths.size(),
+            FileAttributes.parallelismFor(paths),
+            i -> {
+                final Path path = Paths.get(paths.get(i));
+                metadata.taken[i] = cache == null ?
+                    readTaken(path) :
+                    cache.getTaken(path, MediaMetadata::readTaken);
+            }
+        );
+        return metadata;
+    }
+
+    /**
+     * @param file The position of a file.
+     * @return The time the photo or video was taken in milliseconds since the epoch, or
+     *     {@link FileAttributes#MISSING}.
+     */
+    long getTaken(int file) {
+        return taken[file];
+    }
+
+    /**
+     * Reads the time a photo or video was taken from its header.
+     *
+     * @param path The path of the file.
+     * @return The time in milliseconds since the epoch, or {@link FileAttributes#MISSING} if the
+     *     file cannot be read or has no capture time.
+     */
+    static long readTaken(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = BUFFER.get();
+            header.clear();
+            header.order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+                continue;
+            header.flip();
+            if (header.remaining() < 12)
+                return FileAttributes.MISSING;
+
+            if ((header.getShort(0) & 0xFFFF) == 0xFFD8)
+                return jpegTaken(header);
+            if (isTiff(header, 0))
+                return exifTaken(header, 0, header.limit());
+            if (isQuickTime(header.getInt(4)))
+                return quickTimeTaken(channel, header);
+            return FileAttributes.MISSING;
+        } catch (IOException | RuntimeException e) {
+            // A truncated or corrupt header has no usable time.
+            return FileAttributes.MISSING;
+        }
+    }
+
+    /**
+     * Walks the segments of a JPEG to its EXIF segment.
+     */
+    private static long jpegTaken(ByteBuffer header) {
+        int pos = 2;
+        while (pos + 4 <= header.limit()) {
+            if ((header.get(pos) & 0xFF) != 0xFF)
+                return FileAttributes.MISSING;
+
+            final int marker = header.get(pos + 1) & 0xFF;
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            // The image data starts at the start of scan, and no metadata follows it.
+            if (marker == 0xDA || marker == 0xD9)
+                return FileAttributes.MISSING;
+
+            final int length = header.getShort(pos + 2) & 0xFFFF;
+            if (
+                marker == 0xE1 &&
+                length >= 8 &&
+                header.getInt(pos + 4) == EXIF &&
+                header.getShort(pos + 8) == 0
+            )
+                return exifTaken(header, pos + 10, Math.min(pos + 2 + length, header.limit()));
+            pos += 2 + length;
+        }
+        return FileAttributes.MISSING;
+    }
+
+    /**
+     * Reads the capture time from the TIFF structure EXIF is stored in.
+     *
+     * @param header The start of the file.
+     * @param start  The position of the TIFF header in the file.
+     * @param end    The end of the TIFF structure, or of the bytes read.
+     */
+    private static long exifTaken(ByteBuffer header, int start, int end) {
+        ByteBuffer tiff = header.duplicate();
+        tiff.limit(end).position(start);
+        tiff = tiff.slice();
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        if (!isTiff(tiff, 0))
+            return FileAttributes.MISSING;
+
+        final int ifd0 = tiff.getInt(4);
+        final int exifIfd = findEntry(tiff, ifd0, TAG_EXIF_IFD);
+        if (exifIfd >= 0) {
+            final int original =
+                findEntry(tiff, tiff.getInt(exifIfd + 8), TAG_DATE_TIME_ORIGINAL);
+            final long taken = original < 0 ?
+                FileAttributes.MISSING :
+                parseExifDate(tiff, original);
+            if (taken != FileAttributes.MISSING)
+                return taken;
+        }
+        final int modified = findEntry(tiff, ifd0, TAG_DATE_TIME);
+        return modified < 0 ? FileAttributes.MISSING : parseExifDate(tiff, modified);
+    }
+
+    /**
+     * @return The position of the entry with the tag in the directory, or -1 without one.
+     */
+    private static int findEntry(ByteBuffer tiff, int ifd, int tag) {
+        if (ifd < 8 || ifd + 2 > tiff.limit())
+            return -1;
+
+        final int count = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            final int entry = ifd + 2 + 12 * i;
+            if (entry + 12 > tiff.limit())
+                return -1;
+            if ((tiff.getShort(entry) & 0xFFFF) == tag)
+                return entry;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses an EXIF date, "yyyy:MM:dd HH:mm:ss", in the system's zone.
+     */
+    private static long parseExifDate(ByteBuffer tiff, int entry) {
+        final int offset = tiff.getInt(entry + 8);
+        if (tiff.getInt(entry + 4) < EXIF_DATE_LENGTH || offset + EXIF_DATE_LENGTH > tiff.limit())
+            return FileAttributes.MISSING;
+
+        try {
+            return LocalDateTime.of(
+                digits(tiff, offset, 4),
+                digits(tiff, offset + 5, 2),
+                digits(tiff, offset + 8, 2),
+                digits(tiff, offset + 11, 2),
+                digits(tiff, offset + 14, 2),
+                digits(tiff, offset + 17, 2)
+            ).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            // Cameras without a clock write zeros.
+            return FileAttributes.MISSING;
+        }
+    }
+
+    private static int digits(ByteBuffer tiff, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            final int digit = tiff.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw new DateTimeException("Not a digit");
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Finds the movie header by reading only the headers of the boxes before it, since the movie
+     * box is often written after the media data at the end of the file.
+     */
+    private static long quickTimeTaken(FileChannel channel, ByteBuffer buffer) throws IOException {
+        final long[] moov = findBox(channel, buffer, 0, channel.size(), MOOV);
+        final long[] mvhd = moov == null ? null : findBox(channel, buffer, moov[0], moov[1], MVHD);
+        if (mvhd == null || read(channel, buffer, mvhd[0], 12) < 12)
+            return FileAttributes.MISSING;
+
+        final long created = buffer.get(0) == 1 ?
+            buffer.getLong(4) :
+            buffer.getInt(4) & 0xFFFFFFFFL;
+        return created == 0 ?
+            FileAttributes.MISSING :
+            (created - QUICKTIME_EPOCH_OFFSET) * 1000;
+    }
+
+    /**
+     * @return The start and end of the contents of the first box of the type between the
+     *     positions, or null without one.
+     */
+    private static long[] findBox(
+        FileChannel channel,
+        ByteBuffer buffer,
+        long start,
+        long end,
+        int type
+    ) throws IOException {
+        long pos = start;
+        while (pos + 8 <= end) {
+            final int read = read(channel, buffer, pos, 16);
+            if (read < 8)
+                return null;
+
+            long size = buffer.getInt(0) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (size == 1 && read == 16) {
+                size = buffer.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < headerSize || pos + size > end)
+                return null;
+            if (buffer.getInt(4) == type)
+                return new long[]{pos + headerSize, pos + size};
+            pos += size;
+        }
+        return null;
+    }
+
+    private static int read(
+        FileChannel channel,
+        ByteBuffer buffer,
+        long position,
+        int length
+    ) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                break;
+        }
+        return buffer.position();
+    }
+
+    private static boolean isTiff(ByteBuffer buffer, int start) {
+        final int order = buffer.getShort(start);
+        if (order != 0x4949 && order != 0x4D4D)
+            return false;
+
+        final ByteOrder previous = buffer.order();
+        buffer.order(order == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        final boolean tiff = buffer.getShort(start + 2) == TIFF_MAGIC;
+        buffer.order(previous);
+        return tiff;
+    }
+
+    private static boolean isQuickTime(int type) {
+        for (int first : FIRST_BOXES) {
+            if (type == first)
+                return true;
+        }
+        return false;
+    }
+
+    private static int box(String type) {
+        return type.charAt(0) << 24 | type.charAt(1) << 16 | type.charAt(2) << 8 | type.charAt(3);
+    }
+}
@@ -0,0 +1,459 @@
+package com.zingkg.renamer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache of the capture times and content digests of files that survives between runs, so a
+ * run over a mostly unchanged tree only reads the files that changed. Files are known by their
+ * device, inode, size and modified time, so a file that is renamed keeps its entry and a file that
+ * is changed misses it.
+ *
+ * The cache file is a header followed by fixed size records sorted by key. It is mapped into
+ * memory when opened and looked up by binary search, so opening a large cache does not read it.
+ * Entries found or added during the run are kept on the heap and written with the mapped records
+ * to a new file when the cache is closed, keeping the most recently used entries up to a limit.
+ * The mapping is released before the new file replaces the cache file, since Windows will not
+ * replace a file that is mapped. Where the file system has no inodes, the absolute path stands in
+ * for the device and inode.
+ */
+final class MetadataCache implements Closeable {
+    /**
+     * The number of entries kept by default, about 30 MiB of cache file.
+     */
+    static final int DEFAULT_MAX_ENTRIES = 1 << 18;
+
+    private static final byte[] MAGIC = {'R', 'N', 'C', '1'};
+    private static final int HEADER_SIZE = 16;
+    private static final int MAX_DIGEST_LENGTH = 64;
+
+    /**
+     * Device, inode, size, modified time, last used run, capture time, digest algorithm, flags,
+     * digest length and digest, padded to a multiple of eight bytes.
+     */
+    private static final int RECORD_SIZE = 8 * 6 + 4 + 1 + 1 + MAX_DIGEST_LENGTH + 2;
+    private static final int LAST_USED_OFFSET = 32;
+    private static final int TAKEN_OFFSET = 40;
+    private static final int ALGORITHM_OFFSET = 48;
+    private static final int FLAGS_OFFSET = 52;
+    private static final int DIGEST_LENGTH_OFFSET = 53;
+
+    private static final byte HAS_TAKEN = 1;
+    private static final byte HAS_DIGEST = 2;
+
+    /**
+     * The key of a file.
+     */
+    private static final class Key implements Comparable<Key> {
+        private final long device;
+        private final long inode;
+        private final long size;
+        private final long modified;
+
+        Key(long device, long inode, long size, long modified) {
+            this.device = device;
+            this.inode = inode;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+
+            final Key key = (Key) o;
+            return device == key.device &&
+                inode == key.inode &&
+                size == key.size &&
+                modified == key.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(inode * 31 + device) * 31 + Long.hashCode(modified ^ size);
+        }
+
+        @Override
+        public int compareTo(Key key) {
+            int compare = Long.compare(device, key.device);
+            if (compare == 0)
+                compare = Long.compare(inode, key.inode);
+            if (compare == 0)
+                compare = Long.compare(size, key.size);
+            return compare == 0 ? Long.compare(modified, key.modified) : compare;
+        }
+    }
+
+    /**
+     * What is known about a file.
+     */
+    private static final class Entry {
+        private volatile long taken = FileAttributes.MISSING;
+        private volatile boolean hasTaken;
+        private volatile int algorithm;
+        private volatile byte[] digest;
+    }
+
+    private final File file;
+    private final long run;
+    private volatile int maxEntries;
+    private ByteBuffer mapped;
+    private int mappedCount;
+    private boolean closed;
+    private final Map<Key, Entry> used = new ConcurrentHashMap<>();
+
+    /**
+     * The id stored for each algorithm name, the same for every spelling of an algorithm.
+     */
+    private final Map<String, Integer> algorithmIds = new ConcurrentHashMap<>();
+
+    private MetadataCache(File file, int maxEntries, long run, ByteBuffer mapped, int count) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.run = run;
+        this.mapped = mapped;
+        this.mappedCount = count;
+    }
+
+    /**
+     * Opens a cache file, creating an empty cache if it does not exist.
+     *
+     * @param file       The cache file.
+     * @param maxEntries The number of entries to keep when the cache is closed.
+     * @return The opened cache.
+     * @throws IOException If the cache cannot be read or is not a cache.
+     */
+    static MetadataCache open(File file, int maxEntries) throws IOException {
+        if (!file.exists() || file.length() == 0)
+            return new MetadataCache(file, maxEntries, 1, ByteBuffer.allocate(0), 0);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final byte[] magic = new byte[MAGIC.length];
+            if (mapped.capacity() < HEADER_SIZE)
+                throw new IOException(file + " is not a metadata cache");
+
+            mapped.get(magic);
+            final int count = mapped.getInt(4);
+            if (
+                !Arrays.equals(magic, MAGIC) ||
+                count < 0 ||
+                HEADER_SIZE + (long) count * RECORD_SIZE > mapped.capacity()
+            )
+                throw new IOException(file + " is not a metadata cache");
+
+            return new MetadataCache(file, maxEntries, mapped.getLong(8) + 1, mapped, count);
+        }
+    }
+
+    /**
+     * Raises the number of entries kept when the cache is closed, for a cache shared by commands
+     * asking for different numbers.
+     *
+     * @param maxEntries The number of entries to keep at least.
+     */
+    void keepAtLeast(int maxEntries) {
+        if (maxEntries > this.maxEntries)
+            this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Gets the capture time of a file from the cache, reading and caching it on a miss.
+     *
+     * @param path   The path of the file.
+     * @param reader Reads the capture time of a file.
+     * @return The capture time of the file.
+     */
+    long getTaken(Path path, ToLongFunction<Path> reader) {
+        final Key key = keyOf(path);
+        if (key == null)
+            return reader.applyAsLong(path);
+
+        final Entry entry = find(key);
+        if (!entry.hasTaken) {
+            entry.taken = reader.applyAsLong(path);
+            entry.hasTaken = true;
+        }
+        return entry.taken;
+    }
+
+    /**
+     * Gets the digest of a file's contents from the cache, reading and caching it on a miss.
+     *
+     * @param path      The path of the file.
+     * @param algorithm The name of the digest algorithm.
+     * @param reader    Reads the digest of a file, or returns null if it cannot.
+     * @return The digest of the file, or null if it could not be read.
+     */
+    byte[] getDigest(Path path, String algorithm, Function<Path, byte[]> reader) {
+        final Key key = keyOf(path);
+        if (key == null)
+            return reader.apply(path);
+
+        final Entry entry = find(key);
+        final int algorithmId =
+            algorithmIds.computeIfAbsent(algorithm, a -> ContentHash.standardName(a).hashCode());
+        if (entry.digest == null || entry.algorithm != algorithmId) {
+            final byte[] digest = reader.apply(path);
+            if (digest == null || digest.length > MAX_DIGEST_LENGTH)
+                return digest;
+
+            entry.algorithm = algorithmId;
+            entry.digest = digest;
+        }
+        return entry.digest;
+    }
+
+    /**
+     * Writes the entries used in this run and the most recently used of the other entries to the
+     * cache file, and releases the mapping of the cache file. Closing it again does nothing.
+     *
+     * @throws IOException If the cache file cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        final List<byte[]> records = used.isEmpty() ? null : collectRecords();
+        final ByteBuffer released = mapped;
+        mapped = ByteBuffer.allocate(0);
+        mappedCount = 0;
+        unmap(released);
+        if (records != null)
+            write(records);
+    }
+
+    /**
+     * @return The records to keep, sorted by key: the entries used in this run and the most
+     *     recently used of the mapped records, copied out of the mapping.
+     */
+    private List<byte[]> collectRecords() {
+        List<byte[]> records = new ArrayList<>(mappedCount + used.size());
+        for (Map.Entry<Key, Entry> entry : used.entrySet()) {
+            final Entry value = entry.getValue();
+            if (value.hasTaken || value.digest != null) {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+                writeRecord(record, entry.getKey(), value);
+                records.add(record.array());
+            }
+        }
+        for (int i = 0; i < mappedCount; i++) {
+            if (!used.containsKey(mappedKey(i))) {
+                byte[] copy = new byte[RECORD_SIZE];
+                ByteBuffer source = mapped.duplicate();
+                source.position(HEADER_SIZE + i * RECORD_SIZE);
+                source.get(copy);
+                records.add(copy);
+            }
+        }
+
+        if (records.size() > maxEntries) {
+            records.sort((a, b) -> Long.compare(lastUsed(b), lastUsed(a)));
+            records = records.subList(0, maxEntries);
+        }
+        records.sort(Comparator.comparing(r -> readKey(ByteBuffer.wrap(r), 0)));
+        return records;
+    }
+
+    /**
+     * Writes records to a new file that replaces the cache file.
+     *
+     * @param records The records sorted by key.
+     * @throws IOException If the cache file cannot be written.
+     */
+    private void write(List<byte[]> records) throws IOException {
+        // Each close writes its own file next to the cache, so processes closing the same cache
+        // at once never write into each other's file; the last one to finish replaces the cache.
+        final Path target = file.getAbsoluteFile().toPath();
+        final Path temporary =
+            Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + records.size() * RECORD_SIZE);
+                out.put(MAGIC).putInt(records.size()).putLong(run);
+                for (byte[] r : records)
+                    out.put(r);
+                out.flip();
+                while (out.hasRemaining())
+                    channel.write(out);
+            }
+            try {
+                Files.move(
+                    temporary,
+                    target,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE
+                );
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Releases a mapping at once rather than when it is garbage collected. Where the JVM offers no
+     * way to, the mapping is left to the garbage collector.
+     *
+     * @param buffer A mapping of the cache file, or an empty buffer if there is none.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        if (!buffer.isDirect())
+            return;
+
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                final Method invokeCleaner =
+                    unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                return;
+            } catch (NoSuchMethodException e) {
+                // Before Java 9, a direct buffer has a cleaner of its own.
+            }
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null)
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The mapping is released when the buffer is garbage collected.
+        }
+    }
+
+    /**
+     * @return The entry of the key, copied from the cache file or created if it is not there.
+     */
+    private Entry find(Key key) {
+        return used.computeIfAbsent(key, k -> {
+            Entry entry = new Entry();
+            final int record = search(k);
+            if (record >= 0)
+                readEntry(record, entry);
+            return entry;
+        });
+    }
+
+    private int search(Key key) {
+        int low = 0;
+        int high = mappedCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int compare = mappedKey(mid).compareTo(key);
+            if (compare < 0)
+                low = mid + 1;
+            else if (compare > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private Key mappedKey(int record) {
+        return readKey(mapped, HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    private void readEntry(int record, Entry entry) {
+        final int start = HEADER_SIZE + record * RECORD_SIZE;
+        final byte flags = mapped.get(start + FLAGS_OFFSET);
+        if ((flags & HAS_TAKEN) != 0) {
+            entry.taken = mapped.getLong(start + TAKEN_OFFSET);
+            entry.hasTaken = true;
+        }
+        if ((flags & HAS_DIGEST) != 0) {
+            final int length = mapped.get(start + DIGEST_LENGTH_OFFSET) & 0xFF;
+            byte[] digest = new byte[Math.min(length, MAX_DIGEST_LENGTH)];
+            for (int i = 0; i < digest.length; i++)
+                digest[i] = mapped.get(start + DIGEST_LENGTH_OFFSET + 1 + i);
+            entry.algorithm = mapped.getInt(start + ALGORITHM_OFFSET);
+            entry.digest = digest;
+        }
+    }
+
+    private void writeRecord(ByteBuffer record, Key key, Entry entry) {
+        record.putLong(key.device).putLong(key.inode).putLong(key.size).putLong(key.modified);
+        record.putLong(run).putLong(entry.taken);
+        final byte[] digest = entry.digest;
+        record.putInt(digest == null ? 0 : entry.algorithm);
+        record.put((byte) ((entry.hasTaken ? HAS_TAKEN : 0) | (digest == null ? 0 : HAS_DIGEST)));
+        record.put((byte) (digest == null ? 0 : digest.length));
+        if (digest != null)
+            record.put(digest);
+    }
+
+    private static Key readKey(ByteBuffer buffer, int start) {
+        return new Key(
+            buffer.getLong(start),
+            buffer.getLong(start + 8),
+            buffer.getLong(start + 16),
+            buffer.getLong(start + 24)
+        );
+    }
+
+    private static long lastUsed(byte[] record) {
+        return ByteBuffer.wrap(record).getLong(LAST_USED_OFFSET);
+    }
+
+    private static Key keyOf(Path path) {
+        try {
+            Map<String, Object> unix =
+                Files.readAttributes(path, "unix:dev,ino,size,lastModifiedTime");
+            return new Key(
+                (Long) unix.get("dev"),
+                (Long) unix.get("ino"),
+                (Long) unix.get("size"),
+                ((FileTime) unix.get("lastModifiedTime")).to(TimeUnit.NANOSECONDS)
+            );
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return keyOfPath(path);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Key keyOfPath(Path path) {
+        try {
+            BasicFileAttributes basic = Files.readAttributes(path, BasicFileAttributes.class);
+            final String absolute = path.toAbsolutePath().toString();
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < absolute.length(); i++)
+                hash = (hash ^ absolute.charAt(i)) * 0x100000001b3L;
+            return new Key(
+                absolute.hashCode(),
+                hash,
+                basic.size(),
+                basic.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+            );
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
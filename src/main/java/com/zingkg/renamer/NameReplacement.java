@@ -0,0 +1,171 @@
+package com.zingkg.renamer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces every match of a regular expression in the file name, leaving the directory alone.
+ * The pattern and the replacement are compiled once, and each thread keeps one matcher that is
+ * reset for every file. The matcher is limited to the file name with a region, so the path is
+ * never copied before matching, and the replacement is written straight into the plan's buffer.
+ *
+ * The replacement uses the syntax of {@link Matcher#appendReplacement}: $n and ${name} refer to
+ * groups and a backslash quotes the next character.
+ */
+final class NameReplacement implements RenamePlan.Part {
+    /**
+     * Writes a piece of the replacement.
+     */
+    @FunctionalInterface
+    private interface Piece {
+        /**
+         * @param out     The buffer holding the new path.
+         * @param path    The current path of the file.
+         * @param matcher The matcher positioned on the current match.
+         */
+        void write(StringBuilder out, String path, Matcher matcher);
+    }
+
+    private final ThreadLocal<Matcher> matchers;
+    private final Piece[] pieces;
+
+    /**
+     * Creates a name replacement.
+     *
+     * @param pattern     The pattern to find in the file name.
+     * @param replacement The text replacing each match.
+     * @throws IllegalArgumentException If the replacement refers to a group the pattern lacks or
+     *     ends with a lone backslash or dollar sign.
+     */
+    NameReplacement(Pattern pattern, String replacement) {
+        this.matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+        this.pieces = compile(replacement, pattern);
+    }
+
+    @Override
+    public void write(StringBuilder out, String path, int nameStart, int extStart, int number) {
+        final Matcher matcher = matchers.get().reset(path);
+        matcher.region(nameStart, path.length());
+        int last = nameStart;
+        while (matcher.find()) {
+            out.append(path, last, matcher.start());
+            for (Piece piece : pieces)
+                piece.write(out, path, matcher);
+            last = matcher.end();
+        }
+        out.append(path, last, path.length());
+        matcher.reset("");
+    }
+
+    /**
+     * Splits a replacement into literal text and group references.
+     *
+     * @param replacement The replacement text.
+     * @param pattern     The pattern the replacement refers to.
+     * @return The pieces of the replacement in order.
+     */
+    private static Piece[] compile(String replacement, Pattern pattern) {
+        final int groupCount = pattern.matcher("").groupCount();
+        List<Piece> pieces = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < replacement.length()) {
+            final char c = replacement.charAt(pos++);
+            if (c == '\\') {
+                if (pos == replacement.length())
+                    throw new IllegalArgumentException("Trailing backslash in " + replacement);
+                literal.append(replacement.charAt(pos++));
+                continue;
+            }
+            if (c != '$') {
+                literal.append(c);
+                continue;
+            }
+
+            if (pos == replacement.length())
+                throw new IllegalArgumentException("Trailing dollar sign in " + replacement);
+
+            addLiteral(pieces, literal);
+            if (replacement.charAt(pos) == '{') {
+                final int end = replacement.indexOf('}', pos);
+                if (end < 0)
+                    throw new IllegalArgumentException("Unclosed group name in " + replacement);
+
+                final String name = replacement.substring(pos + 1, end);
+                if (!hasGroup(pattern, name))
+                    throw new IllegalArgumentException("No group " + name + " in the pattern");
+
+                pieces.add((out, path, matcher) -> appendGroup(
+                    out,
+                    path,
+                    matcher.start(name),
+                    matcher.end(name)
+                ));
+                pos = end + 1;
+            } else {
+                if (!Character.isDigit(replacement.charAt(pos)))
+                    throw new IllegalArgumentException("Illegal group reference in " + replacement);
+
+                // Like Matcher, take as many digits as still name a group of the pattern.
+                int group = replacement.charAt(pos++) - '0';
+                while (pos < replacement.length() && Character.isDigit(replacement.charAt(pos))) {
+                    final int longer = group * 10 + replacement.charAt(pos) - '0';
+                    if (longer > groupCount)
+                        break;
+                    group = longer;
+                    pos++;
+                }
+                if (group > groupCount)
+                    throw new IllegalArgumentException("No group " + group + " in the pattern");
+
+                final int index = group;
+                pieces.add((out, path, matcher) -> appendGroup(
+                    out,
+                    path,
+                    matcher.start(index),
+                    matcher.end(index)
+                ));
+            }
+        }
+        addLiteral(pieces, literal);
+        return pieces.toArray(new Piece[0]);
+    }
+
+    /**
+     * @param pattern A pattern.
+     * @param name    The name of a group.
+     * @return True if the pattern has a group with the name.
+     */
+    private static boolean hasGroup(Pattern pattern, String name) {
+        // Matcher only looks a name up once it holds a match, so an empty pattern is matched
+        // first. Switching to the pattern keeps the match but forgets its groups.
+        final Matcher matcher = Pattern.compile("").matcher("");
+        matcher.find();
+        matcher.usePattern(pattern);
+        try {
+            matcher.start(name);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void addLiteral(List<Piece> pieces, StringBuilder literal) {
+        if (literal.length() == 0)
+            return;
+
+        final String text = literal.toString();
+        pieces.add((out, path, matcher) -> out.append(text));
+        literal.setLength(0);
+    }
+
+    /**
+     * Appends a group of the match. A group that took no part in the match appends nothing.
+     */
+    private static void appendGroup(StringBuilder out, String path, int start, int end) {
+        if (start >= 0)
+            out.append(path, start, end);
+    }
+}
@@ -0,0 +1,348 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names files from a template such as "{mtime:yyyyMMdd}_{n}". The template replaces the file name
+ * without its extension, and the directory and extension are kept. The tokens are:
+ *
+ * <ul>
+ *     <li>{n} the number of the file, or {n:3} padded with zeros to three digits</li>
+ *     <li>{name} the current file name without its extension</li>
+ *     <li>{mtime:pattern} the time the file was modified, in a {@link DateTimeFormatter} pattern
+ *     </li>
+ *     <li>{ctime:pattern} the time the file was created, in a {@link DateTimeFormatter} pattern
+ *     </li>
+ *     <li>{taken:pattern} the time the photo or video was taken, read from its EXIF or movie
+ *     header</li>
+ *     <li>{size} the size of the file in bytes</li>
+ *     <li>{hash} the SHA-256 digest of the file's contents in hexadecimal, {hash:16} its first
+ *     16 digits, or {hash:MD5:16} the first 16 digits of another
+ *     {@link java.security.MessageDigest} algorithm</li>
+ * </ul>
+ *
+ * The template is parsed once. Tokens that need file attributes or capture times read them in bulk
+ * for each batch in {@link #prepare}. A file without the metadata it needs keeps its name, and
+ * {@link #getMissing} tells why, so it can be reported as a failure.
+ *
+ * When the template has a digest, a file that would take the new name of an earlier file with the
+ * same contents keeps its name rather than colliding with it, and is listed by {@link #getCopies}.
+ * The earlier file may be in another batch; see {@link CopyFinder}.
+ */
+final class NameTemplate implements FileOperation, KeepsCopies, NeedsMetadata {
+    /**
+     * The date pattern used when a time token does not give one.
+     */
+    private static final String DEFAULT_DATE_PATTERN = "yyyyMMdd";
+
+    /**
+     * The buffer each thread writes new paths into.
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER =
+        ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /**
+     * Writes a piece of the new file name.
+     */
+    @FunctionalInterface
+    private interface Token {
+        /**
+         * Writes a piece of the new file name.
+         *
+         * @param out    The buffer holding the new path.
+         * @param path   The current path of the file.
+         * @param name   The position where the file name starts in the path.
+         * @param ext    The position of the extension's dot, or the path length without one.
+         * @param batch  The metadata of the batch, or null if the template needs none.
+         * @param row    The position of the file in the batch.
+         * @param number The number given to the file.
+         * @return False if the metadata the token needs is missing.
+         */
+        boolean write(
+            StringBuilder out,
+            String path,
+            int name,
+            int ext,
+            Batch batch,
+            int row,
+            int number
+        );
+    }
+
+    /**
+     * The metadata read for a batch of files.
+     */
+    private static final class Batch {
+        private final int firstIndex;
+        private final int size;
+        private final FileAttributes attributes;
+        private final MediaMetadata media;
+        private final ContentHash hash;
+
+        /**
+         * Why each file applied so far keeps its name for lack of metadata, or null where it does
+         * not.
+         */
+        private final String[] missing;
+
+        Batch(
+            int firstIndex,
+            int size,
+            FileAttributes attributes,
+            MediaMetadata media,
+            ContentHash hash
+        ) {
+            this.firstIndex = firstIndex;
+            this.size = size;
+            this.attributes = attributes;
+            this.media = media;
+            this.hash = hash;
+            this.missing = new String[size];
+        }
+    }
+
+    private final int startNum;
+    private final MetadataCache cache;
+    private final Token[] tokens;
+
+    /**
+     * Why a file keeps its name when each token cannot be written, or null for tokens that need
+     * no metadata.
+     */
+    private final List<String> missingReasons = new ArrayList<>();
+    private boolean needsAttributes;
+    private boolean needsMedia;
+    private String hashAlgorithm;
+    private volatile Batch batch;
+    private final CopyFinder copies = new CopyFinder();
+
+    /**
+     * Compiles a template.
+     *
+     * @param template The template of the new file names.
+     * @param startNum The number given to the first file.
+     * @param cache    The cache of capture times and digests read before, or null to read every
+     *     file.
+     * @throws IllegalArgumentException If the template has an unknown or unclosed token or an
+     *     invalid date pattern.
+     */
+    NameTemplate(String template, int startNum, MetadataCache cache) {
+        this.startNum = startNum;
+        this.cache = cache;
+        this.tokens = compile(template);
+    }
+
+    @Override
+    public void prepare(List<String> paths, int firstIndex) {
+        read(paths, firstIndex);
+        if (hashAlgorithm != null)
+            copies.find(paths, firstIndex, this::getDigest, this);
+    }
+
+    /**
+     * Reads the metadata of a batch without looking for copies, for an enclosing operation that
+     * looks for copies by the names it gives the files.
+     *
+     * @param paths      The current paths of the files of the batch.
+     * @param firstIndex The position of the first file of the batch among all of the files.
+     */
+    void read(List<String> paths, int firstIndex) {
+        batch = new Batch(
+            firstIndex,
+            paths.size(),
+            needsAttributes ? FileAttributes.read(paths) : null,
+            needsMedia ? MediaMetadata.read(paths, cache) : null,
+            hashAlgorithm == null ? null : ContentHash.read(paths, hashAlgorithm, cache)
+        );
+    }
+
+    /**
+     * @param row The position of a file in the last read batch.
+     * @return The digest of the file, or null if it could not be read or the template has none.
+     */
+    byte[] getDigest(int row) {
+        final Batch current = batch;
+        return current == null || current.hash == null ? null : current.hash.getDigest(row);
+    }
+
+    @Override
+    public List<String[]> getCopies() {
+        return copies.getCopies();
+    }
+
+    @Override
+    public String getMissing(int index) {
+        final Batch current = batch;
+        final int row = current == null ? -1 : index - current.firstIndex;
+        return row < 0 || row >= current.size ? null : current.missing[row];
+    }
+
+    @Override
+    public String apply(String path, int index) {
+        final Batch current = batch;
+        final int row = current == null ? -1 : index - current.firstIndex;
+        final boolean needsBatch = needsAttributes || needsMedia || hashAlgorithm != null;
+        if (needsBatch && (row < 0 || row >= current.size))
+            throw new IllegalStateException("No metadata was read for file " + index);
+        if (hashAlgorithm != null && copies.copyOf(index) != null)
+            return path;
+
+        final int nameStart = path.lastIndexOf(File.separatorChar) + 1;
+        int extStart = path.lastIndexOf('.');
+        if (extStart < nameStart)
+            extStart = path.length();
+
+        final int number = startNum + index;
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        out.append(path, 0, nameStart);
+        for (int i = 0; i < tokens.length; i++) {
+            if (!tokens[i].write(out, path, nameStart, extStart, current, row, number)) {
+                current.missing[row] = missingReasons.get(i);
+                return path;
+            }
+        }
+        out.append(path, extStart, path.length());
+        return out.toString();
+    }
+
+    private Token[] compile(String template) {
+        List<Token> compiled = new ArrayList<>();
+        int pos = 0;
+        while (pos < template.length()) {
+            final int open = template.indexOf('{', pos);
+            final int literalEnd = open < 0 ? template.length() : open;
+            if (literalEnd > pos) {
+                final String text = template.substring(pos, literalEnd);
+                if (text.indexOf('}') >= 0)
+                    throw new IllegalArgumentException("Unopened token in " + template);
+                compiled.add((out, path, name, ext, batch, row, number) -> {
+                    out.append(text);
+                    return true;
+                });
+                missingReasons.add(null);
+            }
+            if (open < 0)
+                break;
+
+            final int close = template.indexOf('}', open);
+            if (close < 0)
+                throw new IllegalArgumentException("Unclosed token in " + template);
+
+            final String token = template.substring(open + 1, close);
+            final int colon = token.indexOf(':');
+            final String key = colon < 0 ? token : token.substring(0, colon);
+            final String argument = colon < 0 ? null : token.substring(colon + 1);
+            compiled.add(compileToken(key, argument));
+            missingReasons.add(missingReason(key));
+            pos = close + 1;
+        }
+        return compiled.toArray(new Token[0]);
+    }
+
+    private Token compileToken(String key, String argument) {
+        switch (key) {
+            case "n":
+                final int width = argument == null ? 0 : Integer.parseInt(argument);
+                return (out, path, name, ext, batch, row, number) -> {
+                    final String digits = Integer.toString(number);
+                    for (int i = digits.length(); i < width; i++)
+                        out.append('0');
+                    out.append(digits);
+                    return true;
+                };
+            case "name":
+                return (out, path, name, ext, batch, row, number) -> {
+                    out.append(path, name, ext);
+                    return true;
+                };
+            case "mtime":
+                needsAttributes = true;
+                final DateTimeFormatter modified = formatter(argument);
+                return (out, path, name, ext, batch, row, number) ->
+                    appendTime(out, modified, batch.attributes.getModified(row));
+            case "ctime":
+                needsAttributes = true;
+                final DateTimeFormatter created = formatter(argument);
+                return (out, path, name, ext, batch, row, number) ->
+                    appendTime(out, created, batch.attributes.getCreated(row));
+            case "taken":
+                needsMedia = true;
+                final DateTimeFormatter taken = formatter(argument);
+                return (out, path, name, ext, batch, row, number) ->
+                    appendTime(out, taken, batch.media.getTaken(row));
+            case "size":
+                needsAttributes = true;
+                return (out, path, name, ext, batch, row, number) -> {
+                    final long size = batch.attributes.getSize(row);
+                    if (size == FileAttributes.MISSING)
+                        return false;
+                    out.append(size);
+                    return true;
+                };
+            case "hash":
+                return hashToken(argument);
+            default:
+                throw new IllegalArgumentException("Unknown token {" + key + "}");
+        }
+    }
+
+    /**
+     * @param key The key of a token.
+     * @return Why a file keeps its name when the token cannot be written.
+     */
+    private static String missingReason(String key) {
+        switch (key) {
+            case "taken":
+                return "The file has no capture time";
+            case "hash":
+                return "The contents of the file could not be read";
+            default:
+                return "The attributes of the file could not be read";
+        }
+    }
+
+    private Token hashToken(String argument) {
+        final int colon = argument == null ? -1 : argument.lastIndexOf(':');
+        String algorithm = ContentHash.DEFAULT_ALGORITHM;
+        String length = argument;
+        if (colon >= 0) {
+            algorithm = argument.substring(0, colon);
+            length = argument.substring(colon + 1);
+        } else if (argument != null && !argument.chars().allMatch(Character::isDigit)) {
+            algorithm = argument;
+            length = null;
+        }
+        if (hashAlgorithm != null && !hashAlgorithm.equals(algorithm))
+            throw new IllegalArgumentException("A template can only use one digest algorithm");
+
+        final int maxDigits = ContentHash.digestLength(algorithm) * 2;
+        final int digits = length == null ? 0 : Integer.parseInt(length);
+        if (digits < 0 || digits > maxDigits) {
+            throw new IllegalArgumentException(
+                algorithm + " digests have at most " + maxDigits + " digits"
+            );
+        }
+        hashAlgorithm = algorithm;
+        return (out, path, name, ext, batch, row, number) ->
+            batch.hash.appendHex(out, row, digits);
+    }
+
+    private static DateTimeFormatter formatter(String pattern) {
+        return DateTimeFormatter.ofPattern(pattern == null ? DEFAULT_DATE_PATTERN : pattern)
+            .withZone(ZoneId.systemDefault());
+    }
+
+    private static boolean appendTime(StringBuilder out, DateTimeFormatter formatter, long millis) {
+        if (millis == FileAttributes.MISSING)
+            return false;
+
+        formatter.formatTo(Instant.ofEpochMilli(millis), out);
+        return true;
+    }
+}
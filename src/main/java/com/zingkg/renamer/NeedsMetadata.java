@@ -0,0 +1,13 @@
+package com.zingkg.renamer;
+
+/**
+ * An operation that names files by metadata some files may not have, such as a capture time, and
+ * leaves the files without it alone.
+ */
+interface NeedsMetadata {
+    /**
+     * @param index The position of a file of the last prepared batch, after it was applied.
+     * @return Why the file keeps its name for lack of the metadata it needs, or null if it has it.
+     */
+    String getMissing(int index);
+}
@@ -0,0 +1,108 @@
+package com.zingkg.renamer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Operations fused into one, each applied to the name the one before it computed, so a file is
+ * renamed once and the names in between never reach the file system. Every operation numbers a
+ * file from the same position.
+ *
+ * Each batch is prepared by every operation with the current paths of the files, so operations
+ * that name files by their metadata read it from the files on disk rather than from names that
+ * do not exist yet. Copies are found by the names the whole chain gives the files, so a file that
+ * would take the new name of an earlier file with the same contents keeps its current path, as
+ * does a file that lacks the metadata an operation needs.
+ */
+final class OperationChain implements FileOperation, KeepsCopies, NeedsMetadata {
+    private final FileOperation[] operations;
+
+    /**
+     * The operations that name files by their metadata.
+     */
+    private final NameTemplate[] templates;
+
+    private final CopyFinder copies = new CopyFinder();
+
+    private OperationChain(FileOperation[] operations) {
+        this.operations = operations;
+        this.templates = Arrays.stream(operations)
+            .filter(operation -> operation instanceof NameTemplate)
+            .toArray(NameTemplate[]::new);
+    }
+
+    /**
+     * Fuses operations, flattening chains among them.
+     *
+     * @param operations The operations in the order they are applied.
+     * @return The fused operation.
+     * @throws IllegalArgumentException If there are no operations.
+     */
+    static FileOperation of(FileOperation... operations) {
+        if (operations.length == 0)
+            throw new IllegalArgumentException("A chain needs at least one operation");
+
+        List<FileOperation> flattened = new ArrayList<>();
+        for (FileOperation operation : operations) {
+            if (operation instanceof OperationChain)
+                flattened.addAll(Arrays.asList(((OperationChain) operation).operations));
+            else
+                flattened.add(operation);
+        }
+        if (flattened.size() == 1)
+            return flattened.get(0);
+        return new OperationChain(flattened.toArray(new FileOperation[0]));
+    }
+
+    @Override
+    public void prepare(List<String> paths, int firstIndex) {
+        for (FileOperation operation : operations) {
+            if (operation instanceof NameTemplate)
+                ((NameTemplate) operation).read(paths, firstIndex);
+            else
+                operation.prepare(paths, firstIndex);
+        }
+        if (templates.length != 0)
+            copies.find(paths, firstIndex, this::getDigest, this);
+    }
+
+    @Override
+    public List<String[]> getCopies() {
+        return copies.getCopies();
+    }
+
+    @Override
+    public String getMissing(int index) {
+        for (NameTemplate template : templates) {
+            final String missing = template.getMissing(index);
+            if (missing != null)
+                return missing;
+        }
+        return null;
+    }
+
+    @Override
+    public String apply(String path, int index) {
+        if (copies.copyOf(index) != null)
+            return path;
+
+        String name = path;
+        for (FileOperation operation : operations)
+            name = operation.apply(name, index);
+        return templates.length != 0 && getMissing(index) != null ? path : name;
+    }
+
+    /**
+     * @param row The position of a file in the last prepared batch.
+     * @return The digest a template read for the file, or null if none did.
+     */
+    private byte[] getDigest(int row) {
+        for (NameTemplate template : templates) {
+            final byte[] digest = template.getDigest(row);
+            if (digest != null)
+                return digest;
+        }
+        return null;
+    }
+}
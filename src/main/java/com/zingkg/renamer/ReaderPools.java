@@ -0,0 +1,47 @@
+package com.zingkg.renamer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The fork join pools that list directories and read files, one for each thread count. The pools
+ * are shared by every batch of a run and every job of the server, so their threads, and the
+ * buffers each thread keeps for reading files, are reused rather than built again for each batch.
+ * The threads are daemons and the pools are never shut down.
+ */
+final class ReaderPools {
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger(1);
+
+    private ReaderPools() {
+    }
+
+    /**
+     * @param parallelism The number of threads. Must be at least 1.
+     * @return The shared pool with the number of threads.
+     */
+    static ForkJoinPool get(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Thread count must be at least 1: " + parallelism);
+
+        return POOLS.computeIfAbsent(parallelism, ReaderPools::newPool);
+    }
+
+    private static ForkJoinPool newPool(int parallelism) {
+        return new ForkJoinPool(
+            parallelism,
+            pool -> {
+                ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("renamer-reader-" + THREAD_COUNT.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            },
+            null,
+            false
+        );
+    }
+}
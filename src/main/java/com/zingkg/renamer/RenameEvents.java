@@ -0,0 +1,123 @@
+package com.zingkg.renamer;
+
+import java.lang.reflect.Method;
+
+/**
+ * Reports rename jobs, the naming of each batch and each rename to the JDK Flight Recorder, so a
+ * recording shows them next to the GC and I/O events of the JVM. The events live in their own
+ * source set built against a JDK that has the flight recorder. Loading them pulls in the whole
+ * recorder, so they are only loaded once a recording has started, which is checked at the start
+ * of each job and batch; until then every call does nothing.
+ *
+ * Each begin method returns a token for the matching end method, which is null if the event is
+ * not being recorded.
+ */
+class RenameEvents {
+    private static final String FLIGHT_RECORDER_EVENTS = "com.zingkg.renamer.FlightRecorderEvents";
+
+    /**
+     * FlightRecorder.isInitialized, or null if the JVM has no flight recorder or the events could
+     * not be loaded.
+     */
+    private static Method recorderInitialized = findRecorderInitialized();
+
+    private static volatile RenameEvents instance = new RenameEvents();
+
+    /**
+     * @return The events of this JVM.
+     */
+    static RenameEvents get() {
+        return instance;
+    }
+
+    /**
+     * Starts timing a job.
+     *
+     * @return The token for {@link #endJob}.
+     */
+    Object beginJob() {
+        final RenameEvents events = loadIfRecording();
+        return events == null ? null : events.beginJob();
+    }
+
+    /**
+     * Reports a finished job.
+     *
+     * @param job     The token from {@link #beginJob}.
+     * @param id      The id of a server job, or null.
+     * @param command The command of the job.
+     * @param status  The status the job ended with.
+     */
+    void endJob(Object job, String id, String command, int status) {
+    }
+
+    /**
+     * Starts timing the naming of a batch of files.
+     *
+     * @return The token for {@link #endNaming}.
+     */
+    Object beginNaming() {
+        final RenameEvents events = loadIfRecording();
+        return events == null ? null : events.beginNaming();
+    }
+
+    /**
+     * Reports the naming of a batch of files, including reading what the operation needs to know
+     * about them.
+     *
+     * @param naming     The token from {@link #beginNaming}.
+     * @param firstIndex The position of the first file of the batch among all of the files.
+     * @param files      The number of files in the batch.
+     */
+    void endNaming(Object naming, int firstIndex, int files) {
+    }
+
+    /**
+     * Starts timing a rename.
+     *
+     * @return The token for {@link #endRename}.
+     */
+    Object beginRename() {
+        return null;
+    }
+
+    /**
+     * Reports a rename, including its retries.
+     *
+     * @param rename The token from {@link #beginRename}.
+     * @param result The outcome of the rename.
+     */
+    void endRename(Object rename, RenameResult result) {
+    }
+
+    /**
+     * Switches to the flight recorder events if a recording has started.
+     *
+     * @return The flight recorder events, or null if nothing is being recorded.
+     */
+    private static synchronized RenameEvents loadIfRecording() {
+        if (recorderInitialized == null)
+            return null;
+
+        try {
+            if (!(Boolean) recorderInitialized.invoke(null))
+                return null;
+
+            instance = (RenameEvents) Class.forName(FLIGHT_RECORDER_EVENTS)
+                .getDeclaredConstructor()
+                .newInstance();
+            return instance;
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            recorderInitialized = null;
+            return null;
+        }
+    }
+
+    private static Method findRecorderInitialized() {
+        try {
+            return Class.forName("jdk.jfr.FlightRecorder").getMethod("isInitialized");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
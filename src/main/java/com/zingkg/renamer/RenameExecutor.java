@@ -0,0 +1,486 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renames batches of files with a fixed number of worker threads. A rename never replaces a file
+ * that took the new name after the renames were planned, and each result records why a rename
+ * failed and how long it took.
+ */
+public final class RenameExecutor implements AutoCloseable {
+    /**
+     * The number of renames a worker claims at a time.
+     */
+    private static final int CLAIM_SIZE = 64;
+
+    /**
+     * The most workers that will be suggested for a network file system.
+     */
+    private static final int MAX_NETWORK_WORKERS = 32;
+
+    /**
+     * File store types where each rename pays a network round trip.
+     */
+    private static final Set<String> NETWORK_FILE_SYSTEMS = new HashSet<>(Arrays.asList(
+        "nfs", "nfs4", "cifs", "smbfs", "smb2", "afpfs", "9p", "fuse.sshfs", "webdav"
+    ));
+
+    /**
+     * The most times a rename is tried when it keeps failing for a transient reason.
+     */
+    private static final int MAX_ATTEMPTS = 4;
+
+    /**
+     * True on Windows, where a move refuses an existing target and a file held open by another
+     * process may be denied.
+     */
+    private static final boolean WINDOWS = File.separatorChar == '\\';
+
+    /**
+     * The pause before the first retry of a rename. Each later retry waits twice as long.
+     */
+    private static final long INITIAL_BACKOFF_MILLIS = 10;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger(1);
+
+    /**
+     * Listens to nothing.
+     */
+    private static final RenameListener NO_LISTENER = new RenameListener() {
+    };
+
+    private final int workers;
+    private final ExecutorService pool;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a rename executor.
+     *
+     * @param workers The number of threads renaming files. Must be at least 1.
+     */
+    public RenameExecutor(int workers) {
+        if (workers < 1)
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+
+        this.workers = workers;
+        if (workers == 1) {
+            pool = null;
+        } else {
+            pool = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(
+                    runnable,
+                    "renamer-worker-" + THREAD_COUNT.getAndIncrement()
+                );
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Suggests a worker count for renaming files that live next to the given file. Network file
+     * systems get many workers to hide the round trip of each rename, local file systems get one
+     * per processor.
+     *
+     * @param file A file on the file system that will be renamed on.
+     * @return The suggested number of workers.
+     */
+    public static int workersFor(File file) {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        File existing = file.getAbsoluteFile();
+        while (existing != null && !existing.exists())
+            existing = existing.getParentFile();
+
+        if (existing == null)
+            return processors;
+
+        try {
+            final String type = Files.getFileStore(existing.toPath()).type().toLowerCase();
+            if (NETWORK_FILE_SYSTEMS.contains(type))
+                return Math.min(MAX_NETWORK_WORKERS, processors * 4);
+        } catch (IOException | SecurityException e) {
+            // Fall back on the local default when the file store cannot be inspected.
+        }
+        return processors;
+    }
+
+    /**
+     * Runs the waves of a schedule in order. A rename is not attempted when its target is a file
+     * that failed to move out of the way in an earlier wave. A cycle that cannot be finished is
+     * rolled back, so no file is left under a temporary name.
+     *
+     * @param schedule The renames to run.
+     * @return The outcome of each rename in the order they ran, followed by the rejected renames.
+     */
+    public List<RenameResult> execute(RenameSchedule schedule) {
+        return execute(schedule, NO_LISTENER);
+    }
+
+    /**
+     * Runs the waves of a schedule in order. A rename is not attempted when its target is a file
+     * that failed to move out of the way in an earlier wave. When a rename of a cycle fails, the
+     * renames of the cycle that were made are reversed, last rename first, which moves the parked
+     * file back to its old name. The reversing renames are reported like the others, each in a
+     * wave of its own.
+     *
+     * @param schedule The renames to run.
+     * @param listener Told about each wave and each rename as they finish.
+     * @return The outcome of each rename in the order they ran, followed by the rejected renames.
+     */
+    public List<RenameResult> execute(RenameSchedule schedule, RenameListener listener) {
+        List<RenameResult> results = new ArrayList<>();
+        Set<String> stuck = new HashSet<>();
+        Map<Integer, List<RenameResult>> cycleRenames = new HashMap<>();
+        BitSet brokenCycles = new BitSet();
+        for (RenameSchedule.Wave wave : schedule.getWaves()) {
+            List<File> sources = new ArrayList<>(wave.getSources().size());
+            List<File> targets = new ArrayList<>(wave.getTargets().size());
+            List<Integer> cycles = new ArrayList<>(wave.getSources().size());
+            BitSet inCycle = new BitSet();
+            for (int i = 0; i < wave.getSources().size(); i++) {
+                final File source = wave.getSources().get(i);
+                final File target = wave.getTargets().get(i);
+                final int cycle = wave.getCycle(i);
+                if (stuck.contains(target.getAbsolutePath())) {
+                    if (cycle >= 0)
+                        brokenCycles.set(cycle);
+                    stuck.add(source.getAbsolutePath());
+                    RenameResult result = new RenameResult(
+                        source,
+                        target,
+                        false,
+                        new FileAlreadyExistsException(
+                            target.toString(),
+                            source.toString(),
+                            "The file could not be moved out of the way"
+                        ),
+                        0
+                    );
+                    listener.renamed(result);
+                    results.add(result);
+                } else {
+                    inCycle.set(sources.size(), wave.isInCycle(i));
+                    sources.add(source);
+                    targets.add(target);
+                    cycles.add(cycle);
+                }
+            }
+
+            listener.beforeWave(sources, targets);
+            List<RenameResult> waveResults = execute(sources, targets, inCycle, listener);
+            listener.afterWave(waveResults);
+            for (int i = 0; i < waveResults.size(); i++) {
+                final RenameResult result = waveResults.get(i);
+                final int cycle = cycles.get(i);
+                if (!result.isSuccess()) {
+                    stuck.add(result.getSource().getAbsolutePath());
+                    if (cycle >= 0)
+                        brokenCycles.set(cycle);
+                } else if (cycle >= 0) {
+                    cycleRenames.computeIfAbsent(cycle, c -> new ArrayList<>()).add(result);
+                }
+            }
+            results.addAll(waveResults);
+        }
+        for (int c = brokenCycles.nextSetBit(0); c >= 0; c = brokenCycles.nextSetBit(c + 1)) {
+            results.addAll(
+                rollBack(cycleRenames.getOrDefault(c, Collections.emptyList()), listener)
+            );
+        }
+        schedule.getRejected().forEach(listener::renamed);
+        results.addAll(schedule.getRejected());
+        return results;
+    }
+
+    /**
+     * Stops renaming at the next file boundary. Renames that have not started are reported as
+     * failed with a {@link CancellationException}, except for the renames of a cycle, which are
+     * finished so that no file is left under a temporary name. The executor stays cancelled.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return True if {@link #cancel()} was called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private List<RenameResult> execute(
+        List<File> sources,
+        List<File> targets,
+        BitSet mustFinish,
+        RenameListener listener
+    ) {
+        if (sources.size() != targets.size())
+            throw new IllegalArgumentException("Each source file requires one target file.");
+
+        final File[] sourceArray = sources.toArray(new File[0]);
+        final File[] targetArray = targets.toArray(new File[0]);
+        final RenameResult[] results = new RenameResult[sourceArray.length];
+        final AtomicInteger next = new AtomicInteger();
+        final Callable<Void> worker = () -> {
+            int start;
+            while ((start = next.getAndAdd(CLAIM_SIZE)) < sourceArray.length) {
+                final int end = Math.min(start + CLAIM_SIZE, sourceArray.length);
+                for (int i = start; i < end; i++) {
+                    if (cancelled && !mustFinish.get(i))
+                        results[i] = cancelledResult(sourceArray[i], targetArray[i]);
+                    else
+                        results[i] = rename(sourceArray[i], targetArray[i]);
+                    listener.renamed(results[i]);
+                }
+            }
+            return null;
+        };
+
+        if (pool == null || sourceArray.length <= CLAIM_SIZE) {
+            try {
+                worker.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            awaitAll(submitWorkers(worker, sourceArray.length));
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Reverses the renames of a cycle that could not be finished, last rename first. Each rename
+     * frees the name the one before it needs, so the reversal stops at the first that fails.
+     *
+     * @param done     The renames of the cycle that were made, in the order they ran.
+     * @param listener Told about each reversing rename, each in a wave of its own.
+     * @return The outcome of each reversing rename.
+     */
+    private List<RenameResult> rollBack(List<RenameResult> done, RenameListener listener) {
+        List<RenameResult> results = new ArrayList<>();
+        final BitSet mustFinish = new BitSet();
+        mustFinish.set(0);
+        for (int i = done.size() - 1; i >= 0; i--) {
+            final List<File> sources = Collections.singletonList(done.get(i).getTarget());
+            final List<File> targets = Collections.singletonList(done.get(i).getSource());
+            listener.beforeWave(sources, targets);
+            final List<RenameResult> undone = execute(sources, targets, mustFinish, listener);
+            listener.afterWave(undone);
+            results.addAll(undone);
+            if (!undone.get(0).isSuccess())
+                break;
+        }
+        return results;
+    }
+
+    private static RenameResult cancelledResult(File source, File target) {
+        return new RenameResult(
+            source,
+            target,
+            false,
+            new CancellationException("The rename was cancelled"),
+            0
+        );
+    }
+
+    /**
+     * Shuts down the worker threads.
+     */
+    @Override
+    public void close() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    private List<Future<Void>> submitWorkers(Callable<Void> worker, int fileCount) {
+        final int tasks = Math.min(workers, (fileCount + CLAIM_SIZE - 1) / CLAIM_SIZE);
+        List<Future<Void>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++)
+            futures.add(pool.submit(worker));
+        return futures;
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) {
+        try {
+            for (Future<Void> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while renaming files.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Renames a file and reports it to the flight recorder.
+     *
+     * @param source The file to rename.
+     * @param target The new path of the file.
+     * @return The outcome of the rename.
+     */
+    private static RenameResult rename(File source, File target) {
+        final RenameEvents events = RenameEvents.get();
+        final Object event = events.beginRename();
+        final RenameResult result = renameWithRetries(source, target);
+        events.endRename(event, result);
+        return result;
+    }
+
+    /**
+     * Moves a file, atomically when the file system allows it. Transient failures are retried a
+     * few times with a growing pause in between.
+     *
+     * @param source The file to rename.
+     * @param target The new path of the file.
+     * @return The outcome of the rename.
+     */
+    private static RenameResult renameWithRetries(File source, File target) {
+        final long start = System.nanoTime();
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                move(source.toPath(), target.toPath());
+                return new RenameResult(source, target, true, null, System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS || !isTransient(e) || !sleep(backoff))
+                    return new RenameResult(source, target, false, e, System.nanoTime() - start);
+            }
+            backoff *= 2;
+        }
+    }
+
+    /**
+     * Moves a file without replacing a file that has its new name. A move on Windows refuses an
+     * existing target by itself. Elsewhere a rename replaces its target, so a regular file is
+     * linked under its new name, which fails if the name is taken, and then unlinked from its old
+     * name. Where the file system has no links, and for anything but a regular file, the target is
+     * checked just before the move, which leaves a short window in which a file created under the
+     * new name is replaced.
+     *
+     * @param source The file to rename.
+     * @param target The new path of the file.
+     * @throws IOException If the file cannot be moved, or a file has the new name.
+     */
+    private static void move(Path source, Path target) throws IOException {
+        if (WINDOWS || !Files.isRegularFile(source, LinkOption.NOFOLLOW_LINKS)) {
+            Files.move(source, target);
+            return;
+        }
+
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            if (!isCaseChange(source, target))
+                throw e;
+
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.move(source, target);
+            return;
+        }
+        try {
+            Files.delete(source);
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    /**
+     * @param source A file.
+     * @param target A name that is taken.
+     * @return True if the name only changes the case of the file's name, on a file system that
+     *     ignores case, so the name is taken by the file itself.
+     */
+    private static boolean isCaseChange(Path source, Path target) throws IOException {
+        return source.getFileName().toString().equalsIgnoreCase(target.getFileName().toString()) &&
+            Files.isSameFile(source, target);
+    }
+
+    /**
+     * @param e Why a rename failed.
+     * @return True if trying the rename again may succeed. The failures that last, such as a
+     *     missing file or a taken name, have types of their own, while a busy or locked file is a
+     *     plain {@link FileSystemException}, so only that type is retried. The reason text is not
+     *     looked at, since it is localized on Windows. A denied access is retried on Windows only,
+     *     where it is also how a file held open by another process fails.
+     */
+    static boolean isTransient(Exception e) {
+        if (e instanceof AccessDeniedException)
+            return WINDOWS;
+
+        return e.getClass() == FileSystemException.class;
+    }
+
+    /**
+     * @param millis How long to pause.
+     * @return False if the thread was interrupted instead.
+     */
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Observes the renames of a schedule as they run. Does nothing by default.
+     */
+    public interface RenameListener {
+        /**
+         * Called before the renames of a wave start.
+         *
+         * @param sources The files about to be renamed.
+         * @param targets The new paths of the files.
+         */
+        default void beforeWave(List<File> sources, List<File> targets) {
+        }
+
+        /**
+         * Called after every rename of a wave has finished.
+         *
+         * @param results The outcome of each rename of the wave.
+         */
+        default void afterWave(List<RenameResult> results) {
+        }
+
+        /**
+         * Called for each rename as soon as it is done, from the thread that ran it. Renames that
+         * were not attempted are reported too.
+         *
+         * @param result The outcome of the rename.
+         */
+        default void renamed(RenameResult result) {
+        }
+    }
+}
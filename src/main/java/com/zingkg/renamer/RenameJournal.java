@@ -0,0 +1,310 @@
+package com.zingkg.renamer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only record of renames, written ahead of the renames themselves. Before a batch is
+ * renamed its (old, new) pairs are appended and synced to disk with a single fsync, and after the
+ * batch the outcome of each rename is appended as a bit set. If the process dies in the middle of
+ * a batch, the journal still names every file that may have moved.
+ *
+ * Each record is a type byte, a payload length, the payload and a CRC32 of the type and payload,
+ * so a record torn by a crash is detected and ignored. A journal is cut back to its last whole
+ * record before anything is appended to it, so records written after a crash are not hidden behind
+ * a torn one. Paths are stored as UTF-8, and the new path only stores the part that differs from
+ * the old path.
+ */
+final class RenameJournal implements Closeable {
+    private static final byte[] MAGIC = {'R', 'N', 'J', '1'};
+    private static final byte INTENTS = 1;
+    private static final byte RESULTS = 2;
+
+    /**
+     * The bytes of a record around its payload: the type, the payload length and the CRC32.
+     */
+    private static final int RECORD_OVERHEAD = 1 + 4 + 4;
+
+    private final FileOutputStream file;
+    private final OutputStream out;
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    private final CRC32 crc = new CRC32();
+
+    private RenameJournal(FileOutputStream file) {
+        this.file = file;
+        this.out = new BufferedOutputStream(file, 64 * 1024);
+    }
+
+    /**
+     * Opens a journal for appending, creating it if it does not exist. A torn record at the end of
+     * an existing journal is cut off first.
+     *
+     * @param journal The journal file.
+     * @return The opened journal.
+     * @throws IOException If the journal cannot be opened or is not a journal.
+     */
+    static RenameJournal open(File journal) throws IOException {
+        final long length = journal.length();
+        final long end = length > 0 ? recordsEnd(journal) : 0;
+        RenameJournal renameJournal = new RenameJournal(new FileOutputStream(journal, true));
+        try {
+            if (length == 0) {
+                renameJournal.out.write(MAGIC);
+                renameJournal.sync();
+            } else if (end < length) {
+                renameJournal.file.getChannel().truncate(end);
+                renameJournal.sync();
+            }
+        } catch (IOException e) {
+            renameJournal.file.close();
+            throw e;
+        }
+        return renameJournal;
+    }
+
+    /**
+     * @param journal An existing journal file.
+     * @return The length of the journal up to the end of its last whole record.
+     * @throws IOException If the journal cannot be read or is not a journal.
+     */
+    private static long recordsEnd(File journal) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(journal), 64 * 1024)
+        )) {
+            readMagic(in, journal);
+            long end = MAGIC.length;
+            byte[] record;
+            while ((record = readRecord(in, journal.length() - end)) != null)
+                end += record.length - 1 + RECORD_OVERHEAD;
+            return end;
+        }
+    }
+
+    /**
+     * Records the renames about to happen and waits until they are on disk.
+     *
+     * @param sources The files about to be renamed.
+     * @param targets The new paths of the files.
+     * @throws IOException If the journal cannot be written.
+     */
+    void recordIntents(List<File> sources, List<File> targets) throws IOException {
+        payload.reset();
+        writeVarInt(payload, sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            final byte[] source = encode(sources.get(i));
+            final byte[] target = encode(targets.get(i));
+            int shared = 0;
+            final int maxShared = Math.min(source.length, target.length);
+            while (shared < maxShared && source[shared] == target[shared])
+                shared++;
+
+            writeVarInt(payload, source.length);
+            payload.write(source, 0, source.length);
+            writeVarInt(payload, shared);
+            writeVarInt(payload, target.length - shared);
+            payload.write(target, shared, target.length - shared);
+        }
+        writeRecord(INTENTS);
+        sync();
+    }
+
+    /**
+     * Records the outcome of the renames of the last recorded intents. The outcome is synced with
+     * the next intents or when the journal is closed.
+     *
+     * @param results The outcome of each rename, in the order of the intents.
+     * @throws IOException If the journal cannot be written.
+     */
+    void recordResults(List<RenameResult> results) throws IOException {
+        payload.reset();
+        writeVarInt(payload, results.size());
+        byte[] bits = new byte[(results.size() + 7) / 8];
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).isSuccess())
+                bits[i / 8] |= 1 << (i % 8);
+        }
+        payload.write(bits, 0, bits.length);
+        writeRecord(RESULTS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads every rename recorded in a journal, in the order they were made. Renames of a batch
+     * whose outcome was never recorded are checked against the file system: a rename counts as
+     * done when the old file is gone and the new one exists.
+     *
+     * @param journal The journal file.
+     * @return The recorded renames with whether each one happened.
+     * @throws IOException If the journal cannot be read or is not a journal.
+     */
+    static List<RenameResult> read(File journal) throws IOException {
+        List<RenameResult> renames = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(journal), 64 * 1024)
+        )) {
+            readMagic(in, journal);
+            long remaining = journal.length() - MAGIC.length;
+            List<File[]> pending = null;
+            byte[] record;
+            while ((record = readRecord(in, remaining)) != null) {
+                remaining -= record.length - 1 + RECORD_OVERHEAD;
+                final int[] pos = {1};
+                final int count = readVarInt(record, pos);
+                if (record[0] == INTENTS) {
+                    addUnfinished(pending, renames);
+                    pending = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        final int sourceLength = readVarInt(record, pos);
+                        final byte[] source = Arrays.copyOfRange(
+                            record,
+                            pos[0],
+                            pos[0] + sourceLength
+                        );
+                        pos[0] += sourceLength;
+                        final int shared = readVarInt(record, pos);
+                        final int suffixLength = readVarInt(record, pos);
+                        byte[] target = Arrays.copyOf(source, shared + suffixLength);
+                        System.arraycopy(record, pos[0], target, shared, suffixLength);
+                        pos[0] += suffixLength;
+                        pending.add(new File[]{decode(source), decode(target)});
+                    }
+                } else if (record[0] == RESULTS && pending != null) {
+                    for (int i = 0; i < count && i < pending.size(); i++) {
+                        final File[] rename = pending.get(i);
+                        final boolean success = (record[pos[0] + i / 8] & (1 << (i % 8))) != 0;
+                        renames.add(new RenameResult(rename[0], rename[1], success));
+                    }
+                    pending = null;
+                }
+            }
+            addUnfinished(pending, renames);
+        }
+        return renames;
+    }
+
+    private static void addUnfinished(List<File[]> pending, List<RenameResult> renames) {
+        if (pending == null)
+            return;
+
+        for (File[] rename : pending) {
+            final boolean done = !rename[0].exists() && rename[1].exists();
+            renames.add(new RenameResult(rename[0], rename[1], done));
+        }
+    }
+
+    private void writeRecord(byte type) throws IOException {
+        crc.reset();
+        crc.update(type);
+        crc.update(payload.toByteArray(), 0, payload.size());
+        out.write(type);
+        writeInt(out, payload.size());
+        payload.writeTo(out);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @param in        The journal at the start of a record.
+     * @param remaining The number of bytes left in the journal.
+     * @return The type byte followed by the payload, or null at the end of the journal or at a
+     *     torn record.
+     */
+    private static byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        try {
+            final int type = in.read();
+            if (type < 0)
+                return null;
+
+            final int length = in.readInt();
+            if (length < 0 || length > remaining - RECORD_OVERHEAD)
+                return null;
+
+            byte[] record = new byte[length + 1];
+            record[0] = (byte) type;
+            in.readFully(record, 1, length);
+            final int expected = in.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            return (int) crc.getValue() == expected ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        file.getFD().sync();
+    }
+
+    private static void readMagic(InputStream in, File journal) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        int read = 0;
+        while (read < magic.length) {
+            final int count = in.read(magic, read, magic.length - read);
+            if (count < 0)
+                break;
+            read += count;
+        }
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException(journal + " is not a rename journal");
+    }
+
+    private static byte[] encode(File file) {
+        return file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static File decode(byte[] path) {
+        return new File(new String(path, StandardCharsets.UTF_8));
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
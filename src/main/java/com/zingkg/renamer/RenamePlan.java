@@ -0,0 +1,149 @@
+package com.zingkg.renamer;
+
+/**
+ * A rename compiled into the parts that make up the new path. Each path is split once into the
+ * offsets of its file name and extension, and the parts write the new path into a buffer owned by
+ * the calling thread, so the only allocation per file is the resulting string.
+ */
+final class RenamePlan implements FileOperation {
+    /**
+     * The directory separator of the OS, looked up once instead of per file.
+     */
+    private static final char SEPARATOR = isWindows() ? '\\' : '/';
+
+    /**
+     * The buffer each thread writes new paths into.
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER =
+        ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    /**
+     * Writes a piece of the new path.
+     */
+    @FunctionalInterface
+    interface Part {
+        /**
+         * Writes a piece of the new path.
+         *
+         * @param out       The buffer holding the new path.
+         * @param path      The current path of the file.
+         * @param nameStart The position where the file name starts in the path.
+         * @param extStart  The position of the extension's dot, or the path length without one.
+         * @param number    The number given to the file.
+         */
+        void write(StringBuilder out, String path, int nameStart, int extStart, int number);
+    }
+
+    /**
+     * The directory of the file, including the trailing separator.
+     */
+    static final Part DIRECTORY =
+        (out, path, nameStart, extStart, number) -> out.append(path, 0, nameStart);
+
+    /**
+     * The file name, including its extension.
+     */
+    static final Part NAME =
+        (out, path, nameStart, extStart, number) -> out.append(path, nameStart, path.length());
+
+    /**
+     * The file name without its extension.
+     */
+    static final Part STEM =
+        (out, path, nameStart, extStart, number) -> out.append(path, nameStart, extStart);
+
+    /**
+     * The extension of the file, including the dot.
+     */
+    static final Part EXTENSION =
+        (out, path, nameStart, extStart, number) -> out.append(path, extStart, path.length());
+
+    /**
+     * The number given to the file.
+     */
+    static final Part NUMBER = (out, path, nameStart, extStart, number) -> out.append(number);
+
+    /**
+     * The file name, including its extension, without the digits it starts with.
+     */
+    static final Part NAME_WITHOUT_LEADING_DIGITS = (out, path, nameStart, extStart, number) -> {
+        int start = nameStart;
+        while (start < path.length() && isDigit(path.charAt(start)))
+            start++;
+        out.append(path, start, path.length());
+    };
+
+    /**
+     * The file name without its extension and without the digits it ends with.
+     */
+    static final Part STEM_WITHOUT_TRAILING_DIGITS = (out, path, nameStart, extStart, number) -> {
+        int end = extStart;
+        while (end > nameStart && isDigit(path.charAt(end - 1)))
+            end--;
+        out.append(path, nameStart, end);
+    };
+
+    private final int startNum;
+    private final int step;
+    private final Part[] parts;
+
+    /**
+     * Creates a plan that does not number the files.
+     *
+     * @param parts The parts that make up the new path, in order.
+     */
+    RenamePlan(Part... parts) {
+        this(0, 0, parts);
+    }
+
+    /**
+     * Creates a plan that numbers the files.
+     *
+     * @param startNum The number given to the first file.
+     * @param step     The difference between the numbers of consecutive files.
+     * @param parts    The parts that make up the new path, in order.
+     */
+    RenamePlan(int startNum, int step, Part... parts) {
+        this.startNum = startNum;
+        this.step = step;
+        this.parts = parts;
+    }
+
+    /**
+     * Creates a part that writes fixed text.
+     *
+     * @param text The text to write.
+     * @return The part writing the text.
+     */
+    static Part literal(String text) {
+        return (out, path, nameStart, extStart, number) -> out.append(text);
+    }
+
+    @Override
+    public String apply(String path, int index) {
+        final int nameStart = path.lastIndexOf(SEPARATOR) + 1;
+        int extStart = path.lastIndexOf('.');
+        if (extStart < nameStart)
+            extStart = path.length();
+
+        final int number = startNum + step * index;
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        for (final Part part : parts)
+            part.write(out, path, nameStart, extStart, number);
+        return out.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Checks if we are on windows.
+     *
+     * @return True if the OS is windows. False if not on windows.
+     */
+    private static boolean isWindows() {
+        return System.getProperty("os.name").toLowerCase().contains("win");
+    }
+}
@@ -0,0 +1,110 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.nio.file.FileSystemException;
+
+/**
+ * The outcome of renaming a single file.
+ */
+public final class RenameResult {
+    private final File source;
+    private final File target;
+    private final boolean success;
+    private final Exception error;
+    private final long elapsedNanos;
+
+    /**
+     * Creates a rename result.
+     *
+     * @param source  The file that was renamed.
+     * @param target  The new path of the file.
+     * @param success True if the rename succeeded.
+     */
+    public RenameResult(File source, File target, boolean success) {
+        this(source, target, success, null, 0);
+    }
+
+    /**
+     * Creates a rename result.
+     *
+     * @param source       The file that was renamed.
+     * @param target       The new path of the file.
+     * @param success      True if the rename succeeded.
+     * @param error        Why the rename failed, or null if it is not known.
+     * @param elapsedNanos How long the rename took, including any retries.
+     */
+    public RenameResult(
+        File source,
+        File target,
+        boolean success,
+        Exception error,
+        long elapsedNanos
+    ) {
+        this.source = source;
+        this.target = target;
+        this.success = success;
+        this.error = error;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return The file that was renamed.
+     */
+    public File getSource() {
+        return source;
+    }
+
+    /**
+     * @return The new path of the file.
+     */
+    public File getTarget() {
+        return target;
+    }
+
+    /**
+     * @return True if the rename succeeded. False if it failed.
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return Why the rename failed, or null if it succeeded or the reason is not known.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return A short description of why the rename failed, or null if it succeeded.
+     */
+    public String getFailureReason() {
+        if (success)
+            return null;
+
+        if (error == null)
+            return "Unknown error";
+
+        final String reason = error instanceof FileSystemException ?
+            ((FileSystemException) error).getReason() :
+            error.getMessage();
+        return reason == null ? error.getClass().getSimpleName() : reason;
+    }
+
+    /**
+     * @return How long the rename took in nanoseconds, including any retries. Zero if it was not
+     *     timed.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        final String rename = source + " -> " + target;
+        if (success)
+            return rename;
+
+        return rename + (error == null ? " (failed)" : " (failed: " + error + ")");
+    }
+}
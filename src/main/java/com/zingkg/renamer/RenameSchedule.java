@@ -0,0 +1,342 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders a batch of renames so that no rename overwrites a file. A rename whose target is the
+ * current name of another file in the batch waits until that file has moved away, so chains such
+ * as a to b and b to c run as b to c and then a to b. A cycle such as a to b and b to a is broken
+ * by first moving one file to a temporary name.
+ *
+ * The renames are grouped into waves. The renames of a wave never depend on each other and may run
+ * at the same time, and each wave must finish before the next one starts. Renames that cannot be
+ * made safely are rejected: several files renamed to the same target, a target that is an existing
+ * file outside the batch, and anything waiting on a rejected rename.
+ *
+ * A large job is planned one batch at a time, so an existing target may be a file of a later batch
+ * that will move out of the way. While more batches follow, renames onto an existing file, and
+ * anything waiting on them, can be deferred instead of rejected, to be planned again with the next
+ * batch.
+ *
+ * Planning takes linear time: each path is hashed once, and each rename is visited once when
+ * following the chain of renames it waits on.
+ */
+public final class RenameSchedule {
+    private static final int NONE = -1;
+    private static final int UNVISITED = 0;
+    private static final int VISITING = 1;
+    private static final int VISITED = 2;
+
+    /**
+     * Comes between the name of a parked file and the attempt number in its temporary name.
+     */
+    private static final String TEMPORARY_INFIX = ".renamer-";
+
+    private final List<Wave> waves = new ArrayList<>();
+    private final List<RenameResult> rejected = new ArrayList<>();
+    private final List<String> conflicts = new ArrayList<>();
+    private final List<File> deferredSources = new ArrayList<>();
+    private final List<File> deferredTargets = new ArrayList<>();
+
+    private RenameSchedule() {
+    }
+
+    /**
+     * A group of renames that may run at the same time.
+     */
+    public static final class Wave {
+        private final List<File> sources = new ArrayList<>();
+        private final List<File> targets = new ArrayList<>();
+        private final List<Integer> cycles = new ArrayList<>();
+
+        /**
+         * @return The files to rename.
+         */
+        public List<File> getSources() {
+            return sources;
+        }
+
+        /**
+         * @return The new paths of the files.
+         */
+        public List<File> getTargets() {
+            return targets;
+        }
+
+        /**
+         * @param rename The position of a rename in the wave.
+         * @return True if the rename is part of a cycle. Stopping in the middle of a cycle would
+         *     leave a file under its temporary name, so such renames run even when cancelled.
+         */
+        boolean isInCycle(int rename) {
+            return cycles.get(rename) != NONE;
+        }
+
+        /**
+         * @param rename The position of a rename in the wave.
+         * @return The number of the cycle the rename is part of, or -1 if it is not part of one.
+         *     The renames of a cycle share a number across waves.
+         */
+        int getCycle(int rename) {
+            return cycles.get(rename);
+        }
+
+        private void add(File source, File target, int cycle) {
+            sources.add(source);
+            targets.add(target);
+            cycles.add(cycle);
+        }
+    }
+
+    /**
+     * @return The waves of renames in the order they must run.
+     */
+    public List<Wave> getWaves() {
+        return waves;
+    }
+
+    /**
+     * @return The renames that were not scheduled, each marked as failed with a
+     *     {@link FileAlreadyExistsException}.
+     */
+    public List<RenameResult> getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return A description of each reason renames were rejected.
+     */
+    List<String> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @return The files of the renames that were deferred to the next batch.
+     */
+    public List<File> getDeferredSources() {
+        return deferredSources;
+    }
+
+    /**
+     * @return The new paths of the files of the deferred renames.
+     */
+    public List<File> getDeferredTargets() {
+        return deferredTargets;
+    }
+
+    /**
+     * Plans a batch of renames.
+     *
+     * @param sources The files to rename.
+     * @param targets The new path of each file.
+     * @return The schedule of the renames.
+     */
+    public static RenameSchedule plan(List<File> sources, List<File> targets) {
+        return plan(sources, targets, false);
+    }
+
+    /**
+     * Plans a batch of renames.
+     *
+     * @param sources       The files to rename.
+     * @param targets       The new path of each file.
+     * @param deferExisting True to defer renames onto an existing file outside the batch, and the
+     *                      renames waiting on them, rather than reject them.
+     * @return The schedule of the renames.
+     */
+    public static RenameSchedule plan(
+        List<File> sources,
+        List<File> targets,
+        boolean deferExisting
+    ) {
+        if (sources.size() != targets.size())
+            throw new IllegalArgumentException("Each source file requires one target file.");
+
+        RenameSchedule schedule = new RenameSchedule();
+        final int count = sources.size();
+        final String[] sourceKeys = new String[count];
+        final String[] targetKeys = new String[count];
+        final Map<String, Integer> sourceIndex = new HashMap<>(count * 2);
+        final Map<String, Integer> targetIndex = new HashMap<>(count * 2);
+        final boolean[] skipped = new boolean[count];
+        final boolean[] rejected = new boolean[count];
+        final boolean[] deferred = new boolean[count];
+        final String[] reasons = new String[count];
+        for (int i = 0; i < count; i++) {
+            sourceKeys[i] = sources.get(i).getAbsolutePath();
+            targetKeys[i] = targets.get(i).getAbsolutePath();
+            skipped[i] = sourceKeys[i].equals(targetKeys[i]);
+            sourceIndex.put(sourceKeys[i], i);
+        }
+        for (int i = 0; i < count; i++) {
+            final Integer other = targetIndex.putIfAbsent(targetKeys[i], i);
+            if (other != null) {
+                schedule.conflicts.add(
+                    sourceKeys[other] + " and " + sourceKeys[i] + " would both be renamed to " +
+                    targetKeys[i]
+                );
+                rejected[other] = true;
+                rejected[i] = true;
+                reasons[other] = "Another file would be renamed to the same name";
+                reasons[i] = reasons[other];
+            }
+        }
+
+        // The rename that has to move its file out of the way before each rename can run.
+        final int[] next = new int[count];
+        for (int i = 0; i < count; i++) {
+            final Integer blocker = sourceIndex.get(targetKeys[i]);
+            next[i] = blocker == null || skipped[i] || skipped[blocker] ? NONE : blocker;
+            if (skipped[i] || rejected[i])
+                continue;
+
+            if (next[i] == NONE && blocker == null && deferExisting && targets.get(i).exists()) {
+                deferred[i] = true;
+            } else if (next[i] == NONE && (blocker != null || targets.get(i).exists())) {
+                schedule.conflicts.add(
+                    targetKeys[i] + " already exists and would be overwritten by " + sourceKeys[i]
+                );
+                rejected[i] = true;
+                reasons[i] = "The file already exists";
+            }
+        }
+
+        final int[] waveNumbers = new int[count];
+        final int[] state = new int[count];
+        final File[] temporaries = new File[count];
+        final int[] cycles = new int[count];
+        Arrays.fill(cycles, NONE);
+        int cycleCount = 0;
+        List<Integer> path = new ArrayList<>();
+        for (int start = 0; start < count; start++) {
+            if (skipped[start] || state[start] != UNVISITED)
+                continue;
+
+            path.clear();
+            int current = start;
+            while (current != NONE && state[current] == UNVISITED) {
+                state[current] = VISITING;
+                path.add(current);
+                current = next[current];
+            }
+
+            int firstWave;
+            boolean pathRejected;
+            boolean pathDeferred = false;
+            if (current == NONE) {
+                firstWave = 0;
+                pathRejected = false;
+            } else if (state[current] == VISITED) {
+                firstWave = waveNumbers[current] + 1;
+                pathRejected = rejected[current];
+                pathDeferred = deferred[current];
+            } else {
+                // The path ends in a cycle that starts at the current rename. Its file is moved to
+                // a temporary name first, which frees the name the last rename of the path needs.
+                pathRejected = false;
+                final int cycleStart = path.indexOf(current);
+                for (int j = cycleStart; j < path.size(); j++)
+                    pathRejected |= rejected[path.get(j)];
+                if (!pathRejected) {
+                    temporaries[current] = temporaryFor(sources.get(current));
+                    for (int j = cycleStart; j < path.size(); j++)
+                        cycles[path.get(j)] = cycleCount;
+                    cycleCount++;
+                }
+                firstWave = 1;
+            }
+
+            for (int j = path.size() - 1; j >= 0; j--) {
+                final int rename = path.get(j);
+                pathRejected |= rejected[rename];
+                pathDeferred |= deferred[rename];
+                if (pathRejected && !rejected[rename]) {
+                    rejected[rename] = true;
+                    reasons[rename] = "The file is not moved out of the way";
+                }
+                deferred[rename] = pathDeferred && !pathRejected;
+                waveNumbers[rename] = firstWave + (path.size() - 1 - j);
+                state[rename] = VISITED;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (skipped[i])
+                continue;
+
+            if (rejected[i]) {
+                schedule.rejected.add(new RenameResult(
+                    sources.get(i),
+                    targets.get(i),
+                    false,
+                    new FileAlreadyExistsException(targetKeys[i], sourceKeys[i], reasons[i]),
+                    0
+                ));
+                continue;
+            }
+            if (deferred[i]) {
+                schedule.deferredSources.add(sources.get(i));
+                schedule.deferredTargets.add(targets.get(i));
+                continue;
+            }
+            if (temporaries[i] != null) {
+                schedule.wave(0).add(sources.get(i), temporaries[i], cycles[i]);
+                schedule.wave(waveNumbers[i]).add(temporaries[i], targets.get(i), cycles[i]);
+            } else {
+                schedule.wave(waveNumbers[i]).add(sources.get(i), targets.get(i), cycles[i]);
+            }
+        }
+        schedule.waves.removeIf(wave -> wave.sources.isEmpty());
+        return schedule;
+    }
+
+    private Wave wave(int number) {
+        while (waves.size() <= number)
+            waves.add(new Wave());
+        return waves.get(number);
+    }
+
+    /**
+     * Finds an unused name next to a file to park it under while breaking a cycle.
+     *
+     * @param file The file to park.
+     * @return The temporary path for the file.
+     */
+    private static File temporaryFor(File file) {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        int attempt = 0;
+        File temporary;
+        do {
+            temporary = new File(directory, "." + file.getName() + TEMPORARY_INFIX + attempt++);
+        } while (temporary.exists());
+        return temporary;
+    }
+
+    /**
+     * @param file      A file that may have been parked while breaking a cycle.
+     * @param temporary Another file.
+     * @return True if the other file is a temporary name the file may have been parked under.
+     */
+    static boolean isTemporaryFor(File file, File temporary) {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (directory == null || !directory.equals(temporary.getAbsoluteFile().getParentFile()))
+            return false;
+
+        final String prefix = "." + file.getName() + TEMPORARY_INFIX;
+        final String name = temporary.getName();
+        if (!name.startsWith(prefix) || name.length() == prefix.length())
+            return false;
+
+        for (int i = prefix.length(); i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+}
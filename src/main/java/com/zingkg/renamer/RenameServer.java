@@ -0,0 +1,275 @@
+package com.zingkg.renamer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs rename jobs for a long lived process, so each job is a line of input rather than a new
+ * JVM. Each job is a JSON object with the command line arguments of the job and an optional id:
+ *
+ * <pre>{"id": "7", "args": ["--num-append", "_", "1", "a.jpg", "b.jpg"]}</pre>
+ *
+ * A few jobs run at a time, sharing one pool of rename workers, and a bounded number wait behind
+ * them; reading stops while the queue is full. Each rename is written as soon as it is done, and
+ * each job ends with its status:
+ *
+ * <pre>{"id": "7", "source": "a.jpg", "target": "a_1.jpg", "success": true}
+ * {"id": "7", "status": 0}</pre>
+ *
+ * Files left alone because they have the same contents as another file are written as
+ * {"id": "7", "copy": "b.jpg", "of": "1f0e3dad99908345.jpg"}. A line that is not a job is
+ * answered with an error.
+ */
+final class RenameServer implements AutoCloseable {
+    /**
+     * The number of jobs run at the same time by default.
+     */
+    static final int DEFAULT_CONCURRENT_JOBS = 4;
+
+    /**
+     * The number of jobs that wait to run by default.
+     */
+    static final int DEFAULT_QUEUE_SIZE = 64;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger(1);
+
+    private final PrintStream out;
+    private final RenameExecutor executor;
+    private final ThreadPoolExecutor jobs;
+    private final Semaphore slots;
+
+    /**
+     * The caches named by the jobs, by the absolute path of the cache file. Jobs naming the same
+     * cache share it, and it is saved once when the server closes.
+     */
+    private final Map<Path, MetadataCache> caches = new HashMap<>();
+
+    /**
+     * Creates a server.
+     *
+     * @param out            Where the results are written.
+     * @param workers        The number of threads renaming files for all of the jobs.
+     * @param concurrentJobs The number of jobs run at the same time.
+     * @param queueSize      The number of jobs that wait to run.
+     */
+    RenameServer(PrintStream out, int workers, int concurrentJobs, int queueSize) {
+        this.out = out;
+        this.executor = new RenameExecutor(workers);
+        this.jobs = new ThreadPoolExecutor(
+            concurrentJobs,
+            concurrentJobs,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            runnable -> {
+                Thread thread = new Thread(
+                    runnable,
+                    "renamer-job-" + THREAD_COUNT.getAndIncrement()
+                );
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        this.slots = new Semaphore(concurrentJobs + queueSize);
+    }
+
+    /**
+     * Runs the jobs read from the input until it ends, then waits for them to finish.
+     *
+     * @param in The jobs, one per line.
+     * @throws IOException If the input cannot be read.
+     */
+    void serve(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().isEmpty())
+                continue;
+
+            final String id;
+            final String[] args;
+            try {
+                Map<String, Object> job = JsonLines.parseObject(line);
+                final Object jobId = job.get("id");
+                if (jobId != null && !(jobId instanceof String))
+                    throw new IllegalArgumentException("The id of a job must be a string");
+                id = (String) jobId;
+                args = parseArgs(job.get("args"));
+            } catch (IllegalArgumentException e) {
+                write(new StringBuilder("{\"error\": "), e.getMessage());
+                continue;
+            }
+
+            slots.acquireUninterruptibly();
+            jobs.execute(() -> {
+                try {
+                    run(id, args);
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits for the jobs to finish, shuts down the threads and saves the caches.
+     */
+    @Override
+    public void close() {
+        jobs.shutdown();
+        try {
+            while (!jobs.awaitTermination(1, TimeUnit.MINUTES))
+                continue;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.close();
+            closeCaches();
+        }
+    }
+
+    /**
+     * @param file       A cache file named by a job.
+     * @param maxEntries The number of entries the job asks the cache to keep.
+     * @return The cache kept in the file, opened by the first job that named it and keeping the
+     *     most entries any job asked for.
+     * @throws IOException If the cache cannot be read or is not a cache.
+     */
+    private synchronized MetadataCache getCache(File file, int maxEntries) throws IOException {
+        final Path path = file.getAbsoluteFile().toPath().normalize();
+        MetadataCache cache = caches.get(path);
+        if (cache == null) {
+            cache = MetadataCache.open(file, maxEntries);
+            caches.put(path, cache);
+        } else {
+            cache.keepAtLeast(maxEntries);
+        }
+        return cache;
+    }
+
+    private synchronized void closeCaches() {
+        for (MetadataCache cache : caches.values()) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                System.err.println("Could not save the cache: " + e.getMessage());
+            }
+        }
+        caches.clear();
+    }
+
+    private void run(String id, String[] args) {
+        final Object job = RenameEvents.get().beginJob();
+        int status;
+        try {
+            status = CommandLine.run(args, new CommandLine.Renamer() {
+                @Override
+                public int rename(Stream<String> files, FileOperation operation) {
+                    return RenameServer.this.rename(id, files, operation);
+                }
+
+                @Override
+                public MetadataCache getCache(File file, int maxEntries) throws IOException {
+                    return RenameServer.this.getCache(file, maxEntries);
+                }
+            });
+        } catch (RuntimeException e) {
+            write(start(id).append(", \"error\": "), String.valueOf(e));
+            status = CommandLine.ERROR;
+        }
+        RenameEvents.get().endJob(job, id, args.length == 0 ? null : args[0], status);
+        synchronized (out) {
+            out.println(start(id).append(", \"status\": ").append(status).append('}'));
+        }
+    }
+
+    private int rename(String id, Stream<String> files, FileOperation operation) {
+        final AtomicInteger status = new AtomicInteger(CommandLine.SUCCESS);
+        final BatchRenamer.Listener listener = new BatchRenamer.Listener() {
+            @Override
+            public void copies(List<String[]> copies) {
+                writeCopies(id, copies);
+            }
+
+            @Override
+            public void renamed(RenameResult result) {
+                if (!result.isSuccess())
+                    status.set(CommandLine.ERROR);
+                writeResult(id, result);
+            }
+        };
+        final BatchRenamer batches =
+            new BatchRenamer(operation, executor, listener, RenameStats.disabled());
+        try (Stream<String> fileStream = files) {
+            Iterator<String> fileIterator = fileStream.iterator();
+            List<String> batch = new ArrayList<>();
+            while (BatchRenamer.nextBatch(fileIterator, batch))
+                batches.rename(batch, fileIterator.hasNext());
+        }
+        return status.get();
+    }
+
+    private void writeCopies(String id, List<String[]> copies) {
+        for (String[] copy : copies) {
+            StringBuilder line = start(id).append(", \"copy\": ");
+            JsonLines.appendString(line, copy[0]).append(", \"of\": ");
+            write(line, copy[1]);
+        }
+    }
+
+    private void writeResult(String id, RenameResult result) {
+        StringBuilder line = start(id).append(", \"source\": ");
+        JsonLines.appendString(line, result.getSource().getPath()).append(", \"target\": ");
+        JsonLines.appendString(line, result.getTarget().getPath())
+            .append(", \"success\": ")
+            .append(result.isSuccess());
+        if (result.isSuccess()) {
+            synchronized (out) {
+                out.println(line.append('}'));
+            }
+        } else {
+            write(line.append(", \"error\": "), result.getFailureReason());
+        }
+    }
+
+    private static StringBuilder start(String id) {
+        return JsonLines.appendString(new StringBuilder("{\"id\": "), id);
+    }
+
+    /**
+     * Ends a line with a string member and writes it.
+     */
+    private void write(StringBuilder line, String value) {
+        JsonLines.appendString(line, value).append('}');
+        synchronized (out) {
+            out.println(line);
+        }
+    }
+
+    private static String[] parseArgs(Object args) {
+        if (!(args instanceof List))
+            throw new IllegalArgumentException("A job needs an \"args\" array");
+
+        List<?> list = (List<?>) args;
+        String[] strings = new String[list.size()];
+        for (int i = 0; i < strings.length; i++) {
+            if (!(list.get(i) instanceof String))
+                throw new IllegalArgumentException("The arguments of a job must be strings");
+            strings[i] = (String) list.get(i);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,279 @@
+package com.zingkg.renamer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and counts for a rename run. The run moves through phases one after another, and each
+ * phase adds up the wall time and the CPU time of the whole process spent in it, so the CPU time
+ * of the phases that use several threads is counted too. Each finished rename is counted with its
+ * latency.
+ *
+ * Stats that are not wanted are disabled, which makes every call a single check, so the rename
+ * loop can always report to a stats object.
+ */
+public final class RenameStats {
+    /**
+     * The steps of a rename run.
+     */
+    public enum Phase {
+        /**
+         * Reading the arguments, and sorting the files if asked.
+         */
+        PARSE("parse"),
+
+        /**
+         * Finding the files to rename, or waiting for them when watching a directory.
+         */
+        LIST("list"),
+
+        /**
+         * Reading what the operation needs to know about the files, such as times and digests.
+         */
+        PREPARE("prepare"),
+
+        /**
+         * Computing the new names.
+         */
+        NAME("name"),
+
+        /**
+         * Ordering the renames so that none overwrites a file still to be renamed.
+         */
+        PLAN("plan"),
+
+        /**
+         * Renaming the files.
+         */
+        RENAME("rename");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return The name the phase is reported under.
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final boolean enabled;
+    private final OperatingSystemMXBean os;
+    private final long startNanos;
+    private final long[] wallNanos = new long[PHASES.length];
+    private final long[] cpuNanos = new long[PHASES.length];
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private Phase phase;
+    private long phaseWallStart;
+    private long phaseCpuStart;
+    private long stopNanos = -1;
+    private long files;
+    private long failures;
+
+    /**
+     * Creates stats for a run that starts now.
+     */
+    public RenameStats() {
+        this(true);
+    }
+
+    private RenameStats(boolean enabled) {
+        this.enabled = enabled;
+        this.os = enabled ? ManagementFactory.getOperatingSystemMXBean() : null;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return Stats that record nothing.
+     */
+    public static RenameStats disabled() {
+        return new RenameStats(false);
+    }
+
+    /**
+     * @return False if the stats record nothing.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ends the current phase, if any, and starts another.
+     *
+     * @param next The phase the run is entering.
+     */
+    public synchronized void enter(Phase next) {
+        if (!enabled)
+            return;
+
+        final long wall = System.nanoTime();
+        final long cpu = processCpuNanos();
+        endPhase(wall, cpu);
+        phase = next;
+        phaseWallStart = wall;
+        phaseCpuStart = cpu;
+    }
+
+    /**
+     * Ends the current phase and the run.
+     */
+    public synchronized void stop() {
+        if (!enabled)
+            return;
+
+        stopNanos = System.nanoTime();
+        endPhase(stopNanos, processCpuNanos());
+        phase = null;
+    }
+
+    /**
+     * Counts finished renames.
+     *
+     * @param results The outcome of each rename.
+     */
+    public synchronized void record(List<RenameResult> results) {
+        if (!enabled)
+            return;
+
+        for (RenameResult result : results) {
+            files++;
+            if (!result.isSuccess())
+                failures++;
+            if (result.getElapsedNanos() > 0)
+                latencies.record(result.getElapsedNanos());
+        }
+    }
+
+    /**
+     * @param phase A phase of the run.
+     * @return The wall time spent in the phase, in nanoseconds.
+     */
+    public synchronized long getWallNanos(Phase phase) {
+        return wallNanos[phase.ordinal()];
+    }
+
+    /**
+     * @param phase A phase of the run.
+     * @return The CPU time the process spent in the phase, in nanoseconds, or -1 if the JVM cannot
+     *     measure it.
+     */
+    public synchronized long getCpuNanos(Phase phase) {
+        return cpuNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return The wall time from the start of the run until it stopped, or until now.
+     */
+    public synchronized long getTotalNanos() {
+        return (stopNanos < 0 ? System.nanoTime() : stopNanos) - startNanos;
+    }
+
+    /**
+     * @return The number of renames tried.
+     */
+    public synchronized long getFiles() {
+        return files;
+    }
+
+    /**
+     * @return The number of renames that failed.
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return The renames tried per second of the whole run.
+     */
+    public synchronized double getFilesPerSecond() {
+        final long nanos = getTotalNanos();
+        return nanos > 0 ? files * 1e9 / nanos : 0;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100.
+     * @return The latency of a single rename at the percentile, in nanoseconds, within about 6%.
+     */
+    public synchronized long getLatencyNanos(double percentile) {
+        return latencies.getPercentile(percentile);
+    }
+
+    /**
+     * @return The longest latency of a single rename, in nanoseconds.
+     */
+    public synchronized long getMaxLatencyNanos() {
+        return latencies.getMax();
+    }
+
+    /**
+     * @return The stats as a table for the console.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder(
+            String.format("%-8s %12s %12s%n", "phase", "wall ms", "cpu ms")
+        );
+        for (Phase p : PHASES) {
+            out.append(String.format(
+                "%-8s %12.3f %12s%n",
+                p.getLabel(),
+                wallNanos[p.ordinal()] / 1e6,
+                cpuNanos[p.ordinal()] < 0 ?
+                    "-" :
+                    String.format("%.3f", cpuNanos[p.ordinal()] / 1e6)
+            ));
+        }
+        out.append(String.format("%-8s %12.3f%n", "total", getTotalNanos() / 1e6));
+        out.append(String.format(
+            "%d files, %d failed, %.0f files/s%n",
+            files,
+            failures,
+            getFilesPerSecond()
+        ));
+        out.append(String.format(
+            "rename latency: p50 %s, p99 %s, max %s",
+            formatNanos(latencies.getPercentile(50)),
+            formatNanos(latencies.getPercentile(99)),
+            formatNanos(latencies.getMax())
+        ));
+        return out.toString();
+    }
+
+    private void endPhase(long wall, long cpu) {
+        if (phase == null)
+            return;
+
+        final int i = phase.ordinal();
+        wallNanos[i] += wall - phaseWallStart;
+        if (cpu < 0 || phaseCpuStart < 0 || cpuNanos[i] < 0)
+            cpuNanos[i] = -1;
+        else
+            cpuNanos[i] += cpu - phaseCpuStart;
+    }
+
+    /**
+     * @return The CPU time used by every thread of the process so far, or -1 if it is not known.
+     */
+    private long processCpuNanos() {
+        if (os instanceof com.sun.management.OperatingSystemMXBean)
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+
+        return -1;
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < TimeUnit.MICROSECONDS.toNanos(10))
+            return nanos + " ns";
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(10))
+            return TimeUnit.NANOSECONDS.toMicros(nanos) + " us";
+        return TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+    }
+}
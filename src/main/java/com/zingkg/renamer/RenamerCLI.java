@@ -0,0 +1,20 @@
+package com.zingkg.renamer;
+
+/**
+ * Entry point for running the program only as a command line application. Unlike
+ * {@link RenamerUI}, nothing reachable from here refers to Swing or AWT, so the JVM never loads
+ * them and starts quickly on hosts without a display.
+ */
+public final class RenamerCLI {
+    private RenamerCLI() {
+    }
+
+    /**
+     * Runs a command and exits with its status.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(String[] args) {
+        System.exit(CommandLine.main(args));
+    }
+}
@@ -1,22 +1,224 @@
 package com.zingkg.renamer;
 
+import java.awt.BorderLayout;
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.swing.JButton;
 import javax.swing.JFileChooser;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 public final class RenamerUI extends javax.swing.JFrame {
-    private List<File> currentFiles;
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The most failed renames named in the warning shown after renaming.
+     */
+    private static final int MAX_LISTED_FAILURES = 20;
+
+    /**
+     * How often the progress of a rename is shown.
+     */
+    private static final int PROGRESS_INTERVAL_MILLIS = 250;
+
+    /**
+     * How long the rename settings have to stay unchanged before they are previewed.
+     */
+    private static final int LIVE_PREVIEW_DELAY_MILLIS = 150;
+
+    private final FileTableModel loadedFiles = new FileTableModel();
+    private final FileTableModel previewFiles = new FileTableModel();
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JPanel statusPanel = new JPanel(new BorderLayout());
+    private PreviewWorker previewWorker;
+    private RenameWorker renameWorker;
+    private LoadWorker loadWorker;
+    private RenameStats lastRenameStats;
+    private final Timer livePreviewTimer = new Timer(
+        LIVE_PREVIEW_DELAY_MILLIS,
+        evt -> livePreview()
+    );
+    private final Timer progressTimer = new Timer(PROGRESS_INTERVAL_MILLIS, evt -> {
+        if (renameWorker != null)
+            renameWorker.showProgress();
+    });
 
     /**
      * Creates RenamerUI.
      */
     public RenamerUI() {
         initComponents();
+        loadedFileTable.setModel(loadedFiles);
+        previewFileTable.setModel(previewFiles);
+        addStatusPanel();
+        addLivePreviewListeners();
+    }
+
+    /**
+     * @return The timings and latencies of the last rename, or null if nothing has been renamed.
+     */
+    public RenameStats getLastRenameStats() {
+        return lastRenameStats;
+    }
+
+    /**
+     * Adds a progress bar and a cancel button below the generated form.
+     */
+    private void addStatusPanel() {
+        progressBar.setStringPainted(true);
+        cancelButton.addActionListener(evt -> {
+            if (renameWorker != null)
+                renameWorker.executor.cancel();
+            else if (loadWorker != null)
+                loadWorker.cancel(false);
+            else
+                cancelPreview();
+        });
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+        statusPanel.add(cancelButton, BorderLayout.EAST);
+        statusPanel.setVisible(false);
+
+        JPanel root = new JPanel(new BorderLayout());
+        root.add(getContentPane(), BorderLayout.CENTER);
+        root.add(statusPanel, BorderLayout.SOUTH);
+        setContentPane(root);
+        pack();
+    }
+
+    /**
+     * Shows the progress bar for a job.
+     *
+     * @param task  What the job is doing.
+     * @param total The number of files the job handles.
+     */
+    private void showProgress(String task, int total) {
+        progressBar.setMaximum(total);
+        progressBar.setValue(0);
+        progressBar.setString(task);
+        statusPanel.setVisible(true);
+    }
+
+    /**
+     * Shows how far a job has come.
+     *
+     * @param text  A description of the progress.
+     * @param value The number of files handled.
+     */
+    private void updateProgress(String text, int value) {
+        progressBar.setValue(value);
+        progressBar.setString(text);
+    }
+
+    private void hideProgress() {
+        statusPanel.setVisible(false);
+    }
+
+    /**
+     * Enables or disables the buttons that change the loaded files.
+     *
+     * @param enabled False while files are being renamed.
+     */
+    private void setFileButtonsEnabled(boolean enabled) {
+        filesOpenButton.setEnabled(enabled);
+        filesClearButton.setEnabled(enabled);
+        previewButton.setEnabled(enabled);
+        renameButton.setEnabled(enabled);
+    }
+
+    /**
+     * Removes the files that were renamed from the tables, so that the files that failed or were
+     * not reached stay loaded and can be renamed again.
+     *
+     * @param results The outcome of each rename.
+     * @return The number of loaded files that were renamed.
+     */
+    private int removeRenamedFiles(List<RenameResult> results) {
+        Set<String> renamed = results.stream()
+            .filter(RenameResult::isSuccess)
+            .map(result -> result.getSource().getAbsolutePath())
+            .collect(Collectors.toSet());
+        BitSet rows = new BitSet();
+        for (int row = 0; row < loadedFiles.getRowCount(); row++) {
+            if (renamed.contains(loadedFiles.getPath(row)))
+                rows.set(row);
+        }
+
+        if (previewFiles.getRowCount() == loadedFiles.getRowCount())
+            previewFiles.removeRows(rows);
+        else
+            previewFiles.clear();
+        loadedFiles.removeRows(rows);
+        return rows.cardinality();
+    }
+
+    /**
+     * Warns about the renames that failed.
+     *
+     * @param results   The outcome of each rename.
+     * @param renamed   The number of loaded files that were renamed.
+     * @param total     The number of loaded files.
+     * @param cancelled True if the rename was cancelled.
+     */
+    private void reportResults(
+        List<RenameResult> results,
+        int renamed,
+        int total,
+        boolean cancelled
+    ) {
+        List<RenameResult> failures = results.stream()
+            .filter(result -> !result.isSuccess())
+            .filter(result -> !(result.getError() instanceof CancellationException))
+            .collect(Collectors.toList());
+        if (failures.isEmpty() && !cancelled)
+            return;
+
+        StringBuilder message = new StringBuilder();
+        if (cancelled)
+            message.append("Renamed ").append(renamed).append(" of ").append(total)
+                .append(" files before the rename was cancelled.\n");
+        if (!failures.isEmpty()) {
+            message.append(failures.size()).append(" files could not be renamed.\n");
+            final int listed = Math.min(failures.size(), MAX_LISTED_FAILURES);
+            for (RenameResult failure : failures.subList(0, listed)) {
+                message.append('\n').append(failure.getSource().getName()).append(": ")
+                    .append(failure.getFailureReason());
+            }
+            if (failures.size() > MAX_LISTED_FAILURES)
+                message.append("\n...");
+        }
+        JOptionPane.showMessageDialog(
+            this,
+            message.toString(),
+            "Rename",
+            failures.isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE
+        );
+    }
+
+    /**
+     * @param seconds A duration.
+     * @return The duration in hours, minutes and seconds, leaving out leading zero units.
+     */
+    private static String formatDuration(long seconds) {
+        if (seconds >= 3600)
+            return (seconds / 3600) + " h " + (seconds % 3600 / 60) + " min";
+        if (seconds >= 60)
+            return (seconds / 60) + " min " + (seconds % 60) + " s";
+        return seconds + " s";
     }
 
     /**
@@ -25,7 +227,7 @@ public final class RenamerUI extends javax.swing.JFrame {
     public static void main(String args[]) {
         if (args.length != 0) {
             // Command line version since there are arguments passed.
-            CommandLine.main(args);
+            RenamerCLI.main(args);
         } else {
             // UI version
             /* Set the Nimbus look and feel */
@@ -409,46 +611,127 @@ public final class RenamerUI extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void filesOpenButtonActionPerformed(final java.awt.event.ActionEvent evt) {//GEN-FIRST:event_filesOpenButtonActionPerformed
-        // Select multiple files
+        // Select multiple files, or directories to load every file under them
         c.setMultiSelectionEnabled(true);
+        c.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         final int rVal = c.showOpenDialog(RenamerUI.this);
         if (rVal == JFileChooser.APPROVE_OPTION) {
-            currentFiles = Arrays.asList(c.getSelectedFiles());
-            currentFiles.forEach(file -> {
-                final String filePath = file.getPath();
-                ((DefaultTableModel) loadedFileTable.getModel()).addRow(
-                    new Object[]{file.getName(), filePath}
-                );
-            });
+            eraseFileTables();
+            loadWorker = new LoadWorker(c.getSelectedFiles());
+            setFileButtonsEnabled(false);
+            showProgress("Loading", 0);
+            loadWorker.execute();
         }
     }//GEN-LAST:event_filesOpenButtonActionPerformed
 
     private void filesClearButtonActionPerformed(final java.awt.event.ActionEvent evt) {//GEN-FIRST:event_filesClearButtonActionPerformed
-        currentFiles = new ArrayList<>();
         eraseFileTables();
     }//GEN-LAST:event_filesClearButtonActionPerformed
 
     private void eraseFileTables() {
-        eraseTable(loadedFileTable);
-        eraseTable(previewFileTable);
+        cancelPreview();
+        loadedFiles.clear();
+        previewFiles.clear();
     }
 
     private void previewButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_previewButtonActionPerformed
-        eraseTable(previewFileTable);
-
-        Stream<String> filePaths = getFilePathList();
-        runFileOperation(filePaths).map(file -> {
-            final String fileName = file.getName();
-            final String filePath = file.getAbsolutePath();
-            return new Object[]{fileName, filePath};
-        }).forEach(((DefaultTableModel) previewFileTable.getModel())::addRow);
+        startPreview();
     }//GEN-LAST:event_previewButtonActionPerformed
 
+    /**
+     * Starts filling the preview table in the background, cancelling any preview in progress.
+     */
+    private void startPreview() {
+        cancelPreview();
+        final FileOperation operation = getFileOperation();
+        final String[] paths = getFilePathList().toArray(String[]::new);
+        previewFiles.setRowCount(paths.length);
+
+        final int topRow = previewFileTable.rowAtPoint(
+            previewFileTable.getVisibleRect().getLocation()
+        );
+        previewWorker = new PreviewWorker(paths, operation, Math.max(topRow, 0));
+        showProgress("Previewing", paths.length);
+        previewWorker.execute();
+    }
+
+    /**
+     * Starts a preview once the rename settings have not changed for a moment.
+     */
+    private void schedulePreview() {
+        livePreviewTimer.restart();
+    }
+
+    /**
+     * Previews the loaded files with the current settings, unless files are being renamed or the
+     * settings are incomplete.
+     */
+    private void livePreview() {
+        if (renameWorker != null || loadWorker != null || loadedFiles.getRowCount() == 0)
+            return;
+
+        try {
+            startPreview();
+        } catch (NumberFormatException | IllegalStateException e) {
+            // The settings are being edited, the next change previews again.
+        }
+    }
+
+    /**
+     * Schedules a preview whenever a rename setting changes.
+     */
+    private void addLivePreviewListeners() {
+        livePreviewTimer.setRepeats(false);
+        DocumentListener documentListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                schedulePreview();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                schedulePreview();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                schedulePreview();
+            }
+        };
+        fileRenameTextField.getDocument().addDocumentListener(documentListener);
+        fileNumberInputStringTextField.getDocument().addDocumentListener(documentListener);
+        fileNumberStartNumberTextField.getDocument().addDocumentListener(documentListener);
+        renameTabStartingNumber.addChangeListener(evt -> schedulePreview());
+        renameTabs.addChangeListener(evt -> schedulePreview());
+        for (javax.swing.AbstractButton button : Arrays.asList(
+            renameAscendingRadioButton,
+            renameDescendingRadioButton,
+            prefixRadioButton,
+            suffixRadioButton,
+            prefixSuffixNumberCheckBox,
+            prefixSuffixAscendingRadioButton,
+            prefixSuffixDescendingRadioButton
+        )) {
+            button.addActionListener(evt -> schedulePreview());
+        }
+    }
+
+    private void cancelPreview() {
+        if (previewWorker != null)
+            previewWorker.cancel(false);
+    }
+
     private void renameButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_renameButtonActionPerformed
-        List<String> filePaths = getFilePathList().collect(Collectors.toList());
-        Stream<File> previewFiles = runFileOperation(filePaths.stream());
-        FileUtilities.renameFiles(filePaths.stream(), previewFiles);
-        eraseFileTables();
+        final String[] paths = getFilePathList().toArray(String[]::new);
+        if (paths.length == 0)
+            return;
+
+        cancelPreview();
+        renameWorker = new RenameWorker(paths, getFileOperation());
+        setFileButtonsEnabled(false);
+        showProgress("Renaming", paths.length);
+        progressTimer.start();
+        renameWorker.execute();
     }//GEN-LAST:event_renameButtonActionPerformed
 
     private void prefixSuffixNumberCheckBoxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_prefixSuffixNumberCheckBoxActionPerformed
@@ -463,81 +746,362 @@ public final class RenamerUI extends javax.swing.JFrame {
         prefixSuffixDescendingRadioButton.setEnabled(status);
     }
 
-    private Stream<File> runFileOperation(Stream<String> filePaths) {
+    /**
+     * Builds the rename chosen in the rename tabs. Must be called on the event dispatch thread.
+     *
+     * @return The chosen rename.
+     */
+    private FileOperation getFileOperation() {
         if (renameTabs.getSelectedIndex() == 0) {
             // First tab is rename.
             if (renameAscendingRadioButton.isSelected()) {
-                return FileUtilities.renameAppendAsc(
+                return FileUtilities.renameAppendOperation(
                     fileRenameTextField.getText(),
                     (Integer) renameTabStartingNumber.getValue(),
-                    filePaths
+                    1
                 );
             } else if (renameDescendingRadioButton.isSelected()) {
-                return FileUtilities.renameAppendDesc(
+                return FileUtilities.renameAppendOperation(
                     fileRenameTextField.getText(),
                     (Integer) renameTabStartingNumber.getValue(),
-                    filePaths
+                    -1
                 );
             }
         } else if (renameTabs.getSelectedIndex() == 1) {
             if (prefixRadioButton.isSelected() && !prefixSuffixNumberCheckBox.isSelected()) {
-                return FileUtilities.prependString(
-                    fileNumberInputStringTextField.getText(),
-                    filePaths
+                return FileUtilities.prependStringOperation(
+                    fileNumberInputStringTextField.getText()
                 );
             } else if (suffixRadioButton.isSelected() && !prefixSuffixNumberCheckBox.isSelected()) {
-                return FileUtilities.appendString(
-                    fileNumberInputStringTextField.getText(),
-                    filePaths
+                return FileUtilities.appendStringOperation(
+                    fileNumberInputStringTextField.getText()
                 );
             } else if (
                 prefixRadioButton.isSelected() &&
                 prefixSuffixAscendingRadioButton.isSelected()
             ) {
-                return FileUtilities.numberPrepend(
+                return FileUtilities.numberPrependOperation(
                     fileNumberInputStringTextField.getText(),
                     Integer.parseInt(fileNumberStartNumberTextField.getText()),
-                    filePaths
+                    1
                 );
             } else if (
                 suffixRadioButton.isSelected() &&
                 prefixSuffixAscendingRadioButton.isSelected()
             ) {
-                return FileUtilities.numberAppend(
-                        fileNumberInputStringTextField.getText(),
-                        Integer.parseInt(fileNumberStartNumberTextField.getText()),
-                        filePaths
+                return FileUtilities.numberAppendOperation(
+                    fileNumberInputStringTextField.getText(),
+                    Integer.parseInt(fileNumberStartNumberTextField.getText()),
+                    1
                 );
             } else if (
                 prefixRadioButton.isSelected() &&
                 prefixSuffixDescendingRadioButton.isSelected()
             ) {
-                return FileUtilities.numberPrependDesc(
+                return FileUtilities.numberPrependOperation(
                     fileNumberInputStringTextField.getText(),
                     Integer.parseInt(fileNumberStartNumberTextField.getText()),
-                    filePaths
+                    -1
                 );
             } else if (
                 suffixRadioButton.isSelected() &&
                 prefixSuffixDescendingRadioButton.isSelected()
             ) {
-                return FileUtilities.numberAppendDesc(
+                return FileUtilities.numberAppendOperation(
                     fileNumberInputStringTextField.getText(),
                     Integer.parseInt(fileNumberStartNumberTextField.getText()),
-                    filePaths
+                    -1
                 );
             }
         }
-        throw new RuntimeException("Impossible file combination was run.");
+        throw new IllegalStateException("Impossible file combination was run.");
     }
 
     private Stream<String> getFilePathList() {
-        return currentFiles.stream().map(File::getAbsolutePath);
+        return loadedFiles.stream();
+    }
+
+    /**
+     * Loads the selected files in the background, expanding directories into the files under them
+     * and sorting the files in natural order. The sorted files are added to the table in chunks.
+     * A cancelled load keeps the files added so far.
+     */
+    private final class LoadWorker extends SwingWorker<Void, List<String>> {
+        /**
+         * The number of files added to the table at a time.
+         */
+        private static final int CHUNK_SIZE = 16 * 1024;
+
+        private final File[] selected;
+        private volatile boolean incomplete;
+        private int loaded;
+
+        LoadWorker(File[] selected) {
+            this.selected = selected;
+        }
+
+        @Override
+        protected Void doInBackground() {
+            String[] paths = Arrays.stream(selected)
+                .flatMap(this::expandDirectory)
+                .map(File::getAbsolutePath)
+                .toArray(String[]::new);
+            FileSorter.sort(paths, FileSorter.Order.NATURAL);
+            for (int start = 0; start < paths.length && !isCancelled(); start += CHUNK_SIZE) {
+                final int end = Math.min(start + CHUNK_SIZE, paths.length);
+                publish(Arrays.asList(paths).subList(start, end));
+            }
+            return null;
+        }
+
+        /**
+         * Expands a directory into the files under it.
+         *
+         * @param file A selected file or directory.
+         * @return The file itself, or the files under the directory.
+         */
+        private Stream<File> expandDirectory(File file) {
+            if (isCancelled())
+                return Stream.empty();
+            if (!file.isDirectory())
+                return Stream.of(file);
+
+            DirectoryScanner scanner = new DirectoryScanner(
+                file.toPath(),
+                Collections.emptyList(),
+                Collections.emptyList(),
+                RenameExecutor.workersFor(file)
+            );
+            try (Stream<String> files = scanner.stream()) {
+                List<File> found = files.map(File::new).collect(Collectors.toList());
+                if (scanner.hasFailed())
+                    incomplete = true;
+                return found.stream();
+            }
+        }
+
+        @Override
+        protected void process(List<List<String>> chunks) {
+            if (isCancelled())
+                return;
+
+            for (List<String> chunk : chunks) {
+                loadedFiles.addAll(chunk);
+                loaded += chunk.size();
+            }
+            updateProgress("Loaded " + loaded + " files", 0);
+        }
+
+        @Override
+        protected void done() {
+            loadWorker = null;
+            hideProgress();
+            setFileButtonsEnabled(true);
+            try {
+                if (!isCancelled())
+                    get();
+                if (incomplete) {
+                    JOptionPane.showMessageDialog(
+                        RenamerUI.this,
+                        "Some directories could not be read, so their files were not loaded.",
+                        "Open",
+                        JOptionPane.WARNING_MESSAGE
+                    );
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                JOptionPane.showMessageDialog(
+                    RenamerUI.this,
+                    "Could not load the files: " + e.getCause(),
+                    "Open",
+                    JOptionPane.ERROR_MESSAGE
+                );
+            }
+            schedulePreview();
+        }
+    }
+
+    /**
+     * Computes the preview of the loaded files in chunks and adds each chunk to the preview table
+     * as soon as it is done. A cancelled or superseded preview adds nothing more.
+     */
+    private final class PreviewWorker extends SwingWorker<Void, PreviewChunk> {
+        /**
+         * The number of files previewed between updates of the table.
+         */
+        private static final int CHUNK_SIZE = 4096;
+
+        private final String[] paths;
+        private final FileOperation operation;
+        private final int firstRow;
+        private int previewed;
+
+        /**
+         * Creates a preview worker.
+         *
+         * @param paths     The paths of the loaded files.
+         * @param operation The rename to preview.
+         * @param firstRow  The top row in view, which is previewed first.
+         */
+        PreviewWorker(String[] paths, FileOperation operation, int firstRow) {
+            this.paths = paths;
+            this.operation = operation;
+            this.firstRow = firstRow;
+        }
+
+        @Override
+        protected Void doInBackground() {
+            // The chunks are previewed starting from the one in view and wrapping around. Each
+            // file is numbered from its index, so the order does not change the names.
+            final int chunks = (paths.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            final int firstChunk = Math.min(firstRow, paths.length) / CHUNK_SIZE;
+            for (int i = 0; i < chunks && !isCancelled(); i++) {
+                final int start = (firstChunk + i) % chunks * CHUNK_SIZE;
+                final int end = Math.min(start + CHUNK_SIZE, paths.length);
+                final Object naming = RenameEvents.get().beginNaming();
+                operation.prepare(Arrays.asList(paths).subList(start, end), start);
+                List<String> names =
+                    FileUtilities.apply(operation, start, Arrays.stream(paths, start, end))
+                        .map(File::getAbsolutePath)
+                        .collect(Collectors.toList());
+                RenameEvents.get().endNaming(naming, start, end - start);
+                publish(new PreviewChunk(start, names));
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<PreviewChunk> chunks) {
+            if (isCancelled() || previewWorker != this)
+                return;
+
+            for (PreviewChunk chunk : chunks) {
+                previewFiles.setPaths(chunk.start, chunk.paths);
+                previewed += chunk.paths.size();
+            }
+            updateProgress("Previewed " + previewed + " of " + paths.length, previewed);
+        }
+
+        @Override
+        protected void done() {
+            if (previewWorker != this)
+                return;
+
+            previewWorker = null;
+            hideProgress();
+            if (isCancelled())
+                return;
+
+            try {
+                get();
+            } catch (InterruptedException | ExecutionException e) {
+                JOptionPane.showMessageDialog(
+                    RenamerUI.this,
+                    "Could not preview the files: " + e.getCause(),
+                    "Preview",
+                    JOptionPane.ERROR_MESSAGE
+                );
+            }
+        }
     }
 
-    private static void eraseTable(javax.swing.JTable table) {
-        while (table.getModel().getRowCount() > 0)
-            ((DefaultTableModel) table.getModel()).removeRow(0);
+    /**
+     * Renames the loaded files in the background. Each finished rename is counted so the progress
+     * bar can show the rate and the time left, and the cancel button stops the executor at the
+     * next file.
+     */
+    private final class RenameWorker extends SwingWorker<List<RenameResult>, Void> {
+        private final String[] paths;
+        private final FileOperation operation;
+        private final RenameExecutor executor;
+        private final AtomicInteger renamed = new AtomicInteger();
+        private final long startNanos = System.nanoTime();
+        private final RenameStats stats = new RenameStats();
+
+        RenameWorker(String[] paths, FileOperation operation) {
+            this.paths = paths;
+            this.operation = operation;
+            this.executor = new RenameExecutor(RenameExecutor.workersFor(new File(paths[0])));
+        }
+
+        @Override
+        protected List<RenameResult> doInBackground() {
+            stats.enter(RenameStats.Phase.LIST);
+            List<File> sources = Arrays.stream(paths).map(File::new).collect(Collectors.toList());
+            stats.enter(RenameStats.Phase.PREPARE);
+            final Object naming = RenameEvents.get().beginNaming();
+            operation.prepare(Arrays.asList(paths), 0);
+            stats.enter(RenameStats.Phase.NAME);
+            List<File> targets = FileUtilities.apply(operation, Arrays.stream(paths))
+                .collect(Collectors.toList());
+            RenameEvents.get().endNaming(naming, 0, paths.length);
+            stats.enter(RenameStats.Phase.PLAN);
+            RenameSchedule schedule = RenameSchedule.plan(sources, targets);
+            stats.enter(RenameStats.Phase.RENAME);
+            try (RenameExecutor renameExecutor = executor) {
+                List<RenameResult> results = renameExecutor.execute(
+                    schedule,
+                    new RenameExecutor.RenameListener() {
+                        @Override
+                        public void renamed(RenameResult result) {
+                            renamed.incrementAndGet();
+                        }
+                    }
+                );
+                stats.record(results);
+                return results;
+            } finally {
+                stats.stop();
+            }
+        }
+
+        /**
+         * Shows the number of files renamed so far, the rate and the estimated time left.
+         */
+        void showProgress() {
+            final int count = Math.min(renamed.get(), paths.length);
+            final double seconds = (System.nanoTime() - startNanos) / 1e9;
+            final long rate = seconds > 0 ? Math.round(count / seconds) : 0;
+            String text = "Renamed " + count + " of " + paths.length + ", " + rate + " files/s";
+            if (rate > 0)
+                text += ", " + formatDuration((paths.length - count) / rate) + " left";
+            if (executor.isCancelled())
+                text += " (cancelling)";
+            updateProgress(text, count);
+        }
+
+        @Override
+        protected void done() {
+            renameWorker = null;
+            lastRenameStats = stats;
+            progressTimer.stop();
+            hideProgress();
+            setFileButtonsEnabled(true);
+            try {
+                final List<RenameResult> results = get();
+                final int renamedFiles = removeRenamedFiles(results);
+                reportResults(results, renamedFiles, paths.length, executor.isCancelled());
+            } catch (InterruptedException | ExecutionException e) {
+                JOptionPane.showMessageDialog(
+                    RenamerUI.this,
+                    "Could not rename the files: " + e.getCause(),
+                    "Rename",
+                    JOptionPane.ERROR_MESSAGE
+                );
+            }
+        }
+    }
+
+    /**
+     * The preview of consecutive loaded files.
+     */
+    private static final class PreviewChunk {
+        private final int start;
+        private final List<String> paths;
+
+        PreviewChunk(int start, List<String> paths) {
+            this.start = start;
+            this.paths = paths;
+        }
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
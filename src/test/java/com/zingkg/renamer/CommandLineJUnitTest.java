@@ -1,12 +1,24 @@
 package com.zingkg.renamer;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 
 /**
  * Tests the command line class.
  */
 public class CommandLineJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Ensures that help returns program success.
      */
@@ -27,6 +39,95 @@ public class CommandLineJUnitTest {
         assertTrue(CommandLine.main(args) == CommandLine.ERROR);
     }
 
+    /**
+     * Ensures that the regex test will an error.
+     */
+    @Test
+    public void lowArgsRegexTest() {
+        String[] args = new String[]{FileUtilities.REGEX_COMMAND, "a"};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+    }
+
+    /**
+     * Ensures that an invalid regular expression returns an error.
+     */
+    @Test
+    public void invalidRegexTest() {
+        String[] args = new String[]{FileUtilities.REGEX_COMMAND, "(", "x", "file.txt"};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+    }
+
+    /**
+     * Ensures that a replacement naming a missing group returns an error.
+     */
+    @Test
+    public void invalidRegexGroupTest() {
+        String[] args = new String[]{FileUtilities.REGEX_COMMAND, "a", "${nope}", "file.txt"};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+    }
+
+    /**
+     * Ensures that an invalid name template returns an error.
+     */
+    @Test
+    public void invalidTemplateTest() {
+        String[] args = new String[]{FileUtilities.TEMPLATE_COMMAND, "{date}", "1", "file.txt"};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+    }
+
+    /**
+     * Ensures that the cache keeps no more entries than asked for, and that the number must be
+     * positive.
+     */
+    @Test
+    public void cacheSizeTest() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final String cache = directory.resolve("renamer.cache").toString();
+        final String first = Files.write(directory.resolve("a.txt"), new byte[]{1}).toString();
+        final String second = Files.write(directory.resolve("b.txt"), new byte[]{2}).toString();
+        String[] args = new String[]{
+            CommandLine.CACHE_OPTION,
+            cache,
+            CommandLine.CACHE_SIZE_OPTION,
+            "0",
+            FileUtilities.HASH_COMMAND,
+            "8",
+            first
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+
+        args[3] = "1";
+        args = Arrays.copyOf(args, args.length + 1);
+        args[args.length - 1] = second;
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertEquals(16 + 120, Files.size(directory.resolve("renamer.cache")));
+    }
+
+    /**
+     * Ensures that a file without the metadata a template needs keeps its name and is reported as
+     * a failure, while the other files are renamed.
+     */
+    @Test
+    public void templateMissingMetadataTest() throws Exception {
+        final Path directory = folder.getRoot().toPath();
+        final String present = Files.createFile(directory.resolve("a.txt")).toString();
+        final String missing = directory.resolve("b.txt").toString();
+        String[] args = new String[]{
+            FileUtilities.TEMPLATE_COMMAND,
+            "{name}_{size}",
+            "1",
+            present,
+            missing
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+        assertTrue(Files.exists(directory.resolve("a_0.txt")));
+
+        final String text = Files.createFile(directory.resolve("c.txt")).toString();
+        args = new String[]{FileUtilities.TEMPLATE_COMMAND, "{taken:yyyy}", "1", text};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+        assertTrue(Files.exists(directory.resolve("c.txt")));
+    }
+
     /**
      * Ensures that the number prepend test will an error.
      */
@@ -96,4 +197,402 @@ public class CommandLineJUnitTest {
         args[0] = FileUtilities.WIPE_RENAME_NUMBER_COMMAND;
         assertTrue(CommandLine.main(args) == CommandLine.ERROR);
     }
+
+    /**
+     * Ensures that a jobs option without a positive number returns an error.
+     */
+    @Test
+    public void invalidJobsTest() {
+        assertTrue(CommandLine.main(new String[]{CommandLine.JOBS_OPTION}) == CommandLine.ERROR);
+        String[] args = new String[]{CommandLine.JOBS_OPTION, "0", "--help"};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+        args = new String[]{CommandLine.JOBS_OPTION, "4", "--help"};
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+    }
+
+    /**
+     * Ensures that files listed in a file are renamed and numbered in list order.
+     */
+    @Test
+    public void filesFromTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Path list = directory.resolve("list");
+        Files.write(list, Arrays.asList(
+            Files.createFile(directory.resolve("b.txt")).toString(),
+            Files.createFile(directory.resolve("a.txt")).toString()
+        ));
+        String[] args = new String[]{
+            CommandLine.FILES_FROM_OPTION,
+            list.toString(),
+            FileUtilities.NUMBER_PREPEND_COMMAND,
+            "-",
+            "1"
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("1-b.txt")));
+        assertTrue(Files.exists(directory.resolve("2-a.txt")));
+    }
+
+    /**
+     * Ensures that every file of a directory holding more than one batch of files is renamed
+     * once, even though the scan of the directory is not ordered.
+     */
+    @Test
+    public void recursiveBatchesTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final int count = 64 * 1024 + 100;
+        for (int i = 0; i < count; i++)
+            Files.createFile(directory.resolve("f" + i));
+        String[] args = new String[]{
+            CommandLine.RECURSIVE_OPTION,
+            directory.toString(),
+            FileUtilities.APPEND_STRING_COMMAND,
+            "_x"
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        String[] names = directory.toFile().list();
+        assertEquals(count, names.length);
+        for (String name : names)
+            assertTrue(name, name.matches("f\\d+_x"));
+    }
+
+    /**
+     * Ensures that chained commands rename each file once, and that an incomplete chain returns
+     * an error.
+     */
+    @Test
+    public void chainTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        String[] args = new String[]{
+            FileUtilities.CHAIN_COMMAND,
+            FileUtilities.REGEX_COMMAND,
+            "IMG_(\\d+)",
+            "$1",
+            FileUtilities.CHAIN_COMMAND,
+            FileUtilities.PREPEND_STRING_COMMAND,
+            "trip-",
+            FileUtilities.CHAIN_COMMAND,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            Files.createFile(directory.resolve("IMG_0042.jpg")).toString(),
+            Files.createFile(directory.resolve("IMG_0043.jpg")).toString()
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("trip-0042_1.jpg")));
+        assertTrue(Files.exists(directory.resolve("trip-0043_2.jpg")));
+
+        args = new String[]{
+            FileUtilities.CHAIN_COMMAND,
+            FileUtilities.PREPEND_STRING_COMMAND,
+            "x",
+            FileUtilities.CHAIN_COMMAND,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_"
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+        args = new String[]{FileUtilities.CHAIN_COMMAND, "--undo", "journal", "a.txt"};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+    }
+
+    /**
+     * Ensures that the files are numbered in natural order when sorted.
+     */
+    @Test
+    public void sortTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        String[] args = new String[]{
+            CommandLine.SORT_OPTION,
+            "natural",
+            FileUtilities.NUMBER_PREPEND_COMMAND,
+            "-",
+            "1",
+            Files.createFile(directory.resolve("b10.txt")).toString(),
+            Files.createFile(directory.resolve("b9.txt")).toString()
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("1-b9.txt")));
+        assertTrue(Files.exists(directory.resolve("2-b10.txt")));
+    }
+
+    /**
+     * Ensures that an unknown sort order returns an error.
+     */
+    @Test
+    public void invalidSortTest() {
+        String[] args = new String[]{
+            CommandLine.SORT_OPTION,
+            "random",
+            FileUtilities.PREPEND_STRING_COMMAND,
+            "new-",
+            "file.txt"
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+    }
+
+    /**
+     * Ensures that a missing file list returns an error.
+     */
+    @Test
+    public void missingFilesFromTest() {
+        String[] args = new String[]{
+            CommandLine.FILES_FROM_OPTION,
+            "does-not-exist.list",
+            FileUtilities.PREPEND_STRING_COMMAND,
+            "new-"
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+    }
+
+    /**
+     * Ensures that a journaled rename can be resumed and then undone.
+     */
+    @Test
+    public void journalResumeUndoTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final String journal = directory.resolve("renames.journal").toString();
+        final String first = Files.createFile(directory.resolve("a.txt")).toString();
+        final String second = Files.createFile(directory.resolve("b.txt")).toString();
+        String[] args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            first
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("a_1.txt")));
+
+        args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal,
+            CommandLine.RESUME_OPTION,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            first,
+            second
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("a_1.txt")));
+        assertTrue(Files.exists(directory.resolve("b_2.txt")));
+
+        args = new String[]{CommandLine.UNDO_COMMAND, journal};
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("a.txt")));
+        assertTrue(Files.exists(directory.resolve("b.txt")));
+    }
+
+    /**
+     * Ensures that the renames of a run resumed after a crash tore the end of the journal are
+     * undone too.
+     */
+    @Test
+    public void tornJournalResumeUndoTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final String journal = directory.resolve("renames.journal").toString();
+        final String first = Files.createFile(directory.resolve("a.txt")).toString();
+        final String second = Files.createFile(directory.resolve("b.txt")).toString();
+        String[] args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            first
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        try (RandomAccessFile torn = new RandomAccessFile(journal, "rw")) {
+            torn.setLength(torn.length() - 3);
+        }
+
+        args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal,
+            CommandLine.RESUME_OPTION,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            first,
+            second
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("b_2.txt")));
+
+        args = new String[]{CommandLine.UNDO_COMMAND, journal};
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("a.txt")));
+        assertTrue(Files.exists(directory.resolve("b.txt")));
+    }
+
+    /**
+     * Ensures that undoing a rename does not overwrite a file that has since taken the old name.
+     */
+    @Test
+    public void undoExistingTargetTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final String journal = directory.resolve("renames.journal").toString();
+        final Path file = Files.createFile(directory.resolve("a.txt"));
+        String[] args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            file.toString()
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        Files.write(file, "new".getBytes("UTF-8"));
+
+        args = new String[]{CommandLine.UNDO_COMMAND, journal};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+        assertEquals("new", new String(Files.readAllBytes(file), "UTF-8"));
+        assertTrue(Files.exists(directory.resolve("a_1.txt")));
+    }
+
+    /**
+     * Ensures that undoing a file renamed by two runs restores its first name.
+     */
+    @Test
+    public void undoTwiceRenamedTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final String journal = directory.resolve("renames.journal").toString();
+        Files.createFile(directory.resolve("a.txt"));
+        String[] args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            directory.resolve("a.txt").toString()
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        args[5] = directory.resolve("a_1.txt").toString();
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("a_1_1.txt")));
+
+        args = new String[]{CommandLine.UNDO_COMMAND, journal};
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertTrue(Files.exists(directory.resolve("a.txt")));
+        assertFalse(Files.exists(directory.resolve("a_1.txt")));
+    }
+
+    /**
+     * Ensures that resuming a run that stopped in the middle of a cycle moves the parked file back
+     * and renames it.
+     */
+    @Test
+    public void resumeParkedTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final File journal = directory.resolve("renames.journal").toFile();
+        final Path file = Files.createFile(directory.resolve("a.txt"));
+        final Path parked = directory.resolve(".a.txt.renamer-0");
+        try (RenameJournal renameJournal = RenameJournal.open(journal)) {
+            renameJournal.recordIntents(
+                Collections.singletonList(file.toFile()),
+                Collections.singletonList(parked.toFile())
+            );
+        }
+        Files.move(file, parked);
+
+        String[] args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal.toString(),
+            CommandLine.RESUME_OPTION,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            file.toString()
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertFalse(Files.exists(parked));
+        assertTrue(Files.exists(directory.resolve("a_1.txt")));
+    }
+
+    /**
+     * Ensures that resuming a run that stopped in the middle of a cycle moves the parked file on
+     * to its new name when its old name has been taken.
+     */
+    @Test
+    public void resumeParkedNameTakenTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final File journal = directory.resolve("renames.journal").toFile();
+        final Path file = Files.createFile(directory.resolve("a.txt"));
+        final Path parked = directory.resolve(".a.txt.renamer-0");
+        final Path target = directory.resolve("b.txt");
+        try (RenameJournal renameJournal = RenameJournal.open(journal)) {
+            renameJournal.recordIntents(
+                Collections.singletonList(file.toFile()),
+                Collections.singletonList(parked.toFile())
+            );
+            renameJournal.recordResults(Collections.singletonList(
+                new RenameResult(file.toFile(), parked.toFile(), true)
+            ));
+            renameJournal.recordIntents(
+                Collections.singletonList(parked.toFile()),
+                Collections.singletonList(target.toFile())
+            );
+        }
+        Files.move(file, parked);
+        Files.createFile(file);
+
+        String[] args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal.toString(),
+            CommandLine.RESUME_OPTION,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            file.toString()
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.SUCCESS);
+        assertFalse(Files.exists(parked));
+        assertTrue(Files.exists(target));
+        assertTrue(Files.exists(file));
+    }
+
+    /**
+     * Ensures that resuming fails when a parked file can go neither back to its old name nor on
+     * to a new one.
+     */
+    @Test
+    public void resumeParkedStuckTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final File journal = directory.resolve("renames.journal").toFile();
+        final Path file = Files.createFile(directory.resolve("a.txt"));
+        final Path parked = directory.resolve(".a.txt.renamer-0");
+        try (RenameJournal renameJournal = RenameJournal.open(journal)) {
+            renameJournal.recordIntents(
+                Collections.singletonList(file.toFile()),
+                Collections.singletonList(parked.toFile())
+            );
+            renameJournal.recordResults(Collections.singletonList(
+                new RenameResult(file.toFile(), parked.toFile(), true)
+            ));
+        }
+        Files.move(file, parked);
+        Files.createFile(file);
+
+        String[] args = new String[]{
+            CommandLine.JOURNAL_OPTION,
+            journal.toString(),
+            CommandLine.RESUME_OPTION,
+            FileUtilities.NUMBER_APPEND_COMMAND,
+            "_",
+            "1",
+            file.toString()
+        };
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+        assertTrue(Files.exists(parked));
+    }
+
+    /**
+     * Ensures that resuming without a journal returns an error.
+     */
+    @Test
+    public void resumeWithoutJournalTest() {
+        String[] args = new String[]{CommandLine.RESUME_OPTION, "--help"};
+        assertTrue(CommandLine.main(args) == CommandLine.ERROR);
+    }
 }
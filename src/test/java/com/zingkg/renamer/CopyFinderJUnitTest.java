@@ -0,0 +1,47 @@
+package com.zingkg.renamer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests finding the files that would take the new name of an earlier file with the same contents.
+ */
+public class CopyFinderJUnitTest {
+    private static final FileOperation NAMING = (path, index) -> path.toUpperCase();
+
+    /**
+     * Ensures that only a file with the same contents and new name as an earlier file is a copy.
+     */
+    @Test
+    public void findTest() {
+        CopyFinder finder = new CopyFinder();
+        List<String> paths = Arrays.asList("a", "A", "b", "B", "c");
+        byte[][] digests = new byte[][]{{0}, {0}, {1}, {2}, null};
+        finder.find(paths, 5, i -> digests[i], NAMING);
+
+        assertNull(finder.copyOf(5));
+        assertEquals("A", finder.copyOf(6));
+        assertNull(finder.copyOf(7));
+        assertNull(finder.copyOf(8));
+        assertNull(finder.copyOf(9));
+        assertEquals(1, finder.getCopies().size());
+        assertArrayEquals(new String[]{"A", "A"}, finder.getCopies().get(0));
+    }
+
+    /**
+     * Ensures that the new names least recently given are forgotten past the bound.
+     */
+    @Test
+    public void evictionTest() {
+        CopyFinder finder = new CopyFinder(2);
+        final byte[] contents = new byte[]{1};
+        finder.find(Arrays.asList("a", "b", "c"), 0, i -> contents, NAMING);
+        finder.find(Arrays.asList("a", "c"), 3, i -> contents, NAMING);
+
+        assertNull(finder.copyOf(3));
+        assertEquals("C", finder.copyOf(4));
+    }
+}
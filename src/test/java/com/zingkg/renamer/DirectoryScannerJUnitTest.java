@@ -0,0 +1,143 @@
+package com.zingkg.renamer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests scanning directories for files.
+ */
+public class DirectoryScannerJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void createTree() throws IOException {
+        root = folder.getRoot().toPath();
+        for (int i = 0; i < 20; i++) {
+            Path directory = Files.createDirectories(root.resolve("album" + i).resolve("raw"));
+            Files.createFile(directory.getParent().resolve("photo" + i + ".jpg"));
+            Files.createFile(directory.resolve("photo" + i + ".jpg"));
+            Files.createFile(directory.resolve("notes" + i + ".txt"));
+        }
+        Files.createFile(root.resolve("cover.jpg"));
+    }
+
+    /**
+     * Ensures that every file in the tree is found.
+     */
+    @Test
+    public void findAllTest() {
+        assertEquals(61, scan(Collections.emptyList(), Collections.emptyList()).size());
+    }
+
+    /**
+     * Ensures that include globs match file names and exclude globs prune directories.
+     */
+    @Test
+    public void filterTest() {
+        Set<String> files = scan(Arrays.asList("*.jpg"), Arrays.asList("raw"));
+        assertEquals(21, files.size());
+        assertTrue(files.contains(root.resolve("cover.jpg").toString()));
+        assertTrue(files.contains(root.resolve("album7").resolve("photo7.jpg").toString()));
+        assertFalse(files.stream().anyMatch(file -> file.contains("raw")));
+    }
+
+    /**
+     * Ensures that globs with a separator match the path from the root.
+     */
+    @Test
+    public void relativeGlobTest() {
+        Set<String> files = scan(Arrays.asList("album1/**"), Collections.emptyList());
+        assertEquals(3, files.size());
+    }
+
+    /**
+     * Ensures that a directory that cannot be listed ends the stream normally and is reported as a
+     * failure rather than thrown.
+     */
+    @Test
+    public void missingDirectoryTest() {
+        DirectoryScanner scanner = new DirectoryScanner(
+            root.resolve("missing"),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            4
+        );
+        try (Stream<String> files = scanner.stream()) {
+            assertEquals(0, files.count());
+        }
+        assertTrue(scanner.hasFailed());
+    }
+
+    /**
+     * Ensures that a complete scan is not reported as a failure.
+     */
+    @Test
+    public void noFailureTest() {
+        DirectoryScanner scanner = new DirectoryScanner(
+            root,
+            Collections.emptyList(),
+            Collections.emptyList(),
+            4
+        );
+        try (Stream<String> files = scanner.stream()) {
+            assertEquals(61, files.count());
+        }
+        assertFalse(scanner.hasFailed());
+    }
+
+    /**
+     * Ensures that closing a stream before the scan is done frees the threads of the shared pool
+     * for the next scan, even when the queue of found files is full.
+     */
+    @Test(timeout = 60000)
+    public void stopTest() throws IOException {
+        Path many = Files.createDirectory(root.resolve("many"));
+        for (int i = 0; i < 10000; i++)
+            Files.createFile(many.resolve("file" + i));
+        for (int scan = 0; scan < 3; scan++) {
+            DirectoryScanner scanner = new DirectoryScanner(
+                many,
+                Collections.emptyList(),
+                Collections.emptyList(),
+                1
+            );
+            try (Stream<String> files = scanner.stream()) {
+                assertTrue(files.findFirst().isPresent());
+            }
+        }
+
+        DirectoryScanner scanner = new DirectoryScanner(
+            many,
+            Collections.emptyList(),
+            Collections.emptyList(),
+            1
+        );
+        try (Stream<String> files = scanner.stream()) {
+            assertEquals(10000, files.count());
+        }
+    }
+
+    private Set<String> scan(List<String> includes, List<String> excludes) {
+        DirectoryScanner scanner = new DirectoryScanner(root, includes, excludes, 4);
+        try (Stream<String> files = scanner.stream()) {
+            return files.collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+}
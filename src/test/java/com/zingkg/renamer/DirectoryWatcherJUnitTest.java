@@ -0,0 +1,71 @@
+package com.zingkg.renamer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests handing out the files that arrive in a directory.
+ */
+public class DirectoryWatcherJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+    }
+
+    /**
+     * Ensures that arriving files are handed out once and that ignored files are not.
+     */
+    @Test(timeout = 60000)
+    public void arrivalTest() throws Exception {
+        try (DirectoryWatcher watcher = new DirectoryWatcher(directory, 50)) {
+            final Path first = Files.createFile(directory.resolve("scan1.pdf"));
+            final Path second = Files.createFile(directory.resolve("scan2.pdf"));
+            List<String> arrived = new ArrayList<>();
+            while (arrived.size() < 2)
+                arrived.addAll(watcher.nextBatch(100));
+            assertEquals(Arrays.asList(first.toString(), second.toString()), arrived);
+
+            final Path renamed = directory.resolve("renamed.pdf");
+            watcher.ignore(renamed);
+            Files.move(first, renamed);
+            final Path third = Files.createFile(directory.resolve("scan3.pdf"));
+            assertEquals(Arrays.asList(third.toString()), watcher.nextBatch(100));
+        }
+    }
+
+    /**
+     * Ensures that listing the directory again after missed events hands out the files that
+     * arrived meanwhile, but not the files already handed out or put there by the caller.
+     */
+    @Test(timeout = 60000)
+    public void rescanTest() throws Exception {
+        try (DirectoryWatcher watcher = new DirectoryWatcher(directory, 50)) {
+            final Path first = Files.createFile(directory.resolve("scan1.pdf"));
+            List<String> arrived = new ArrayList<>();
+            while (arrived.isEmpty())
+                arrived.addAll(watcher.nextBatch(100));
+            assertEquals(Arrays.asList(first.toString()), arrived);
+
+            final Path renamed = directory.resolve("renamed.pdf");
+            Files.createFile(renamed);
+            watcher.ignore(renamed);
+            final Path missed = Files.createFile(directory.resolve("scan2.pdf"));
+            watcher.rescan(System.nanoTime());
+            assertEquals(Arrays.asList(missed.toString()), watcher.nextBatch(100));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.zingkg.renamer;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests reading file lists.
+ */
+public class FileListReaderJUnitTest {
+    /**
+     * Ensures that new line separated lists skip blank lines and carriage returns.
+     */
+    @Test
+    public void newLineTest() {
+        List<String> files = read("a.txt\r\n\nb c.txt\nd.txt", false);
+        assertEquals(Arrays.asList("a.txt", "b c.txt", "d.txt"), files);
+    }
+
+    /**
+     * Ensures that NUL separated lists keep new lines inside file names.
+     */
+    @Test
+    public void nulDelimitedTest() {
+        List<String> files = read("a\nb.txt\0c.txt\0", true);
+        assertEquals(Arrays.asList("a\nb.txt", "c.txt"), files);
+    }
+
+    /**
+     * Ensures that paths spanning several reads of the channel are read whole.
+     */
+    @Test
+    public void longListTest() {
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            list.append("directory").append(i).append("/file").append(i).append(".txt\n");
+
+        List<String> files = read(list.toString(), false);
+        assertEquals(20000, files.size());
+        assertEquals("directory0/file0.txt", files.get(0));
+        assertEquals("directory12345/file12345.txt", files.get(12345));
+        assertEquals("directory19999/file19999.txt", files.get(19999));
+    }
+
+    /**
+     * Reads a list held in a string.
+     *
+     * @param list         The file list.
+     * @param nulDelimited True if the files are separated by NUL bytes.
+     * @return The files in the list.
+     */
+    private static List<String> read(String list, boolean nulDelimited) {
+        byte[] bytes = list.getBytes(Charset.defaultCharset());
+        FileListReader reader = new FileListReader(
+            Channels.newChannel(new ByteArrayInputStream(bytes)),
+            true,
+            nulDelimited
+        );
+        return reader.stream().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,94 @@
+package com.zingkg.renamer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the sorting of files before they are numbered.
+ */
+public class FileSorterJUnitTest {
+    private static final List<String> PATHS = Arrays.asList(
+        "img10.jpg",
+        "IMG2.jpg",
+        "img1.jpg",
+        "img01.jpg",
+        "img.jpg",
+        "a/img2.jpg"
+    );
+
+    /**
+     * Ensures that numbers are compared by value and case is ignored.
+     */
+    @Test
+    public void naturalTest() {
+        assertEquals(
+            Arrays.asList(
+                "a/img2.jpg",
+                "img.jpg",
+                "img01.jpg",
+                "img1.jpg",
+                "IMG2.jpg",
+                "img10.jpg"
+            ),
+            FileSorter.sort(PATHS, FileSorter.Order.NATURAL)
+        );
+    }
+
+    /**
+     * Ensures that reverse order is natural order from last to first.
+     */
+    @Test
+    public void reverseTest() {
+        assertEquals(
+            Arrays.asList(
+                "img10.jpg",
+                "IMG2.jpg",
+                "img1.jpg",
+                "img01.jpg",
+                "img.jpg",
+                "a/img2.jpg"
+            ),
+            FileSorter.sort(PATHS, FileSorter.Order.REVERSE)
+        );
+    }
+
+    /**
+     * Ensures that lexical order compares characters.
+     */
+    @Test
+    public void lexicalTest() {
+        assertEquals(
+            Arrays.asList(
+                "IMG2.jpg",
+                "a/img2.jpg",
+                "img.jpg",
+                "img01.jpg",
+                "img1.jpg",
+                "img10.jpg"
+            ),
+            FileSorter.sort(PATHS, FileSorter.Order.LEXICAL)
+        );
+    }
+
+    /**
+     * Ensures that long numbers are compared by length before digits.
+     */
+    @Test
+    public void longNumberTest() {
+        assertTrue(
+            FileSorter.naturalKey("9").compareTo(FileSorter.naturalKey("0000123456789")) < 0
+        );
+        assertTrue(FileSorter.naturalKey("a-1").compareTo(FileSorter.naturalKey("a1")) < 0);
+    }
+
+    /**
+     * Ensures that an unknown order is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownOrderTest() {
+        FileSorter.Order.parse("random");
+    }
+}
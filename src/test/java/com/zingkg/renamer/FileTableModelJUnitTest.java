@@ -0,0 +1,108 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.swing.event.TableModelEvent;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the file table model.
+ */
+public class FileTableModelJUnitTest {
+    /**
+     * Ensures that the file column is the last part of the path.
+     */
+    @Test
+    public void cellTest() {
+        FileTableModel model = new FileTableModel();
+        final String path = "dir" + File.separator + "file.txt";
+        model.addAll(Arrays.asList(path));
+
+        assertEquals(1, model.getRowCount());
+        assertEquals("file.txt", model.getValueAt(0, 0));
+        assertEquals(path, model.getValueAt(0, 1));
+        assertEquals("File", model.getColumnName(0));
+        assertEquals("Path", model.getColumnName(1));
+    }
+
+    /**
+     * Ensures that adding and clearing many rows fires a single event each.
+     */
+    @Test
+    public void bulkEventTest() {
+        FileTableModel model = new FileTableModel();
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 100000; i++)
+            paths.add("file" + i);
+
+        model.addAll(paths);
+        model.addAll(paths);
+        assertEquals(2, events.size());
+        assertEquals(100000, events.get(1).getFirstRow());
+        assertEquals(199999, events.get(1).getLastRow());
+        assertEquals(200000, model.getRowCount());
+
+        model.clear();
+        assertEquals(3, events.size());
+        assertEquals(TableModelEvent.DELETE, events.get(2).getType());
+        assertEquals(0, model.getRowCount());
+    }
+
+    /**
+     * Ensures that the paths stream in row order.
+     */
+    @Test
+    public void streamTest() {
+        FileTableModel model = new FileTableModel();
+        model.addAll(Arrays.asList("a", "b"));
+        model.addAll(Arrays.asList("c"));
+        assertEquals(Arrays.asList("a", "b", "c"), model.stream().collect(Collectors.toList()));
+    }
+
+    /**
+     * Ensures that removing rows keeps the order of the other rows.
+     */
+    @Test
+    public void removeRowsTest() {
+        FileTableModel model = new FileTableModel();
+        model.addAll(Arrays.asList("a", "b", "c", "d"));
+        BitSet rows = new BitSet();
+        rows.set(0);
+        rows.set(2);
+        model.removeRows(rows);
+        assertEquals(Arrays.asList("b", "d"), model.stream().collect(Collectors.toList()));
+        assertEquals("d", model.getPath(1));
+    }
+
+    /**
+     * Ensures that setting paths only reports the rows that changed.
+     */
+    @Test
+    public void setPathsTest() {
+        FileTableModel model = new FileTableModel();
+        model.setRowCount(4);
+        assertEquals("", model.getValueAt(3, 0));
+        model.setPaths(0, Arrays.asList("a", "b", "c", "d"));
+
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+        assertEquals(0, model.setPaths(0, Arrays.asList("a", "b")));
+        assertTrue(events.isEmpty());
+
+        assertEquals(2, model.setPaths(1, Arrays.asList("x", "c", "y")));
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.get(0).getType());
+        assertEquals(1, events.get(0).getFirstRow());
+        assertEquals(3, events.get(0).getLastRow());
+        List<String> paths = model.stream().collect(Collectors.toList());
+        assertEquals(Arrays.asList("a", "x", "c", "y"), paths);
+    }
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.junit.Test;
@@ -185,6 +186,109 @@ public class FileUtilitiesJUnitTest {
         assertEquals(renamedNoExtFiles.get(4).getName(), "testfile5.bye");
     }
 
+    /**
+     * Ensures that numbering a parallel stream gives each file the number of its position.
+     */
+    @Test
+    public void parallelNumberingTest() throws Exception {
+        List<String> files = IntStream.range(0, 10000)
+            .mapToObj(i -> "file" + i + ".txt")
+            .collect(Collectors.toList());
+        List<File> ascending = FileUtilities.numberAppend("_", 1, files.parallelStream())
+            .collect(Collectors.toList());
+        List<File> descending = FileUtilities.numberPrependDesc("_", 0, files.stream())
+            .parallel()
+            .collect(Collectors.toList());
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(ascending.get(i).getName(), "file" + i + "_" + (i + 1) + ".txt");
+            assertEquals(descending.get(i).getName(), -i + "_file" + i + ".txt");
+        }
+    }
+
+    /**
+     * Ensures that only the file name is renamed when a directory in the path has a dot.
+     */
+    @Test
+    public void dottedDirectoryTest() throws Exception {
+        final String directory = "photos.2016" + File.separator;
+        List<File> renamedFiles = FileUtilities.deleteEndingAndNumberAppend(
+            "-",
+            7,
+            Stream.of(directory + "trip12.jpg", directory + "trip")
+        ).collect(Collectors.toList());
+        assertEquals(renamedFiles.get(0).getPath(), directory + "trip-7.jpg");
+        assertEquals(renamedFiles.get(1).getPath(), directory + "trip-8");
+
+        List<File> appendedFiles = FileUtilities.numberAppend(
+            "_",
+            1,
+            Stream.of(directory + "notes")
+        ).collect(Collectors.toList());
+        assertEquals(appendedFiles.get(0).getPath(), directory + "notes_1");
+    }
+
+    /**
+     * Tests the regular expression replace function.
+     */
+    @Test
+    public void regexReplaceTest() throws Exception {
+        List<File> renamedFiles = FileUtilities.regexReplace(
+            "testfile(\\d)",
+            "photo-$1-\\$",
+            createExtFiles()
+        ).collect(Collectors.toList());
+        assertEquals(renamedFiles.get(0).getName(), "photo-1-$.txt");
+        assertEquals(renamedFiles.get(4).getName(), "photo-5-$.txt");
+
+        final String directory = "v1" + File.separator;
+        List<File> namedFiles = FileUtilities.regexReplace(
+            "^(?<name>v)1",
+            "${name}2",
+            Stream.of(directory + "v1.txt", directory + "notes.txt")
+        ).collect(Collectors.toList());
+        assertEquals(namedFiles.get(0).getPath(), directory + "v2.txt");
+        assertEquals(namedFiles.get(1).getPath(), directory + "notes.txt");
+    }
+
+    /**
+     * Ensures that a replacement referring to a missing group is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void regexMissingGroupTest() {
+        FileUtilities.regexReplaceOperation("(a)", "$2");
+    }
+
+    /**
+     * Ensures that a replacement referring to a missing named group is rejected before any file
+     * is renamed.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void regexMissingNamedGroupTest() {
+        FileUtilities.regexReplaceOperation("(?<name>a)", "${nope}");
+    }
+
+    /**
+     * Ensures that chained operations each apply to the name the one before computed.
+     */
+    @Test
+    public void chainTest() throws Exception {
+        FileOperation chain = FileUtilities.regexReplaceOperation("testfile", "photo")
+            .andThen(FileUtilities.prependStringOperation("x-"))
+            .andThen(FileUtilities.numberAppendOperation("_", 10, 1));
+        List<File> renamedFiles = FileUtilities.apply(chain, createExtFiles())
+            .collect(Collectors.toList());
+        assertEquals(renamedFiles.get(0).getName(), "x-photo1_10.txt");
+        assertEquals(renamedFiles.get(4).getName(), "x-photo5_14.txt");
+
+        final String directory = "v1" + File.separator;
+        assertEquals(
+            directory + "a-b-c.txt",
+            FileUtilities.appendStringOperation("-b")
+                .andThen(FileUtilities.appendStringOperation("-c"))
+                .apply(directory + "a.txt", 0)
+        );
+    }
+
     /**
      * Creates files that have extensions.
      *
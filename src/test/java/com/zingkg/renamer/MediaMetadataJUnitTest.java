@@ -0,0 +1,95 @@
+package com.zingkg.renamer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests reading the time photos and videos were taken from their headers.
+ */
+public class MediaMetadataJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+    }
+
+    /**
+     * Ensures that the EXIF DateTimeOriginal of a JPEG is read in the system's zone.
+     */
+    @Test
+    public void jpegTest() throws IOException {
+        ByteBuffer tiff = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        // IFD0 points to the EXIF IFD at 26, which points to the date at 44.
+        tiff.putShort((short) 1).putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(26);
+        tiff.putInt(0);
+        tiff.putShort((short) 1).putShort((short) 0x9003).putShort((short) 2).putInt(20).putInt(44);
+        tiff.putInt(0);
+        tiff.put("2019:07:04 12:30:45\0".getBytes(StandardCharsets.US_ASCII));
+
+        ByteBuffer jpeg = ByteBuffer.allocate(128);
+        jpeg.putShort((short) 0xFFD8).putShort((short) 0xFFE1).putShort((short) (2 + 6 + 64));
+        jpeg.put("Exif\0\0".getBytes(StandardCharsets.US_ASCII)).put(tiff.array());
+        jpeg.putShort((short) 0xFFDA);
+        Path file = Files.write(directory.resolve("photo.jpg"), jpeg.array());
+
+        assertEquals(
+            LocalDateTime.of(2019, 7, 4, 12, 30, 45)
+                .atZone(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli(),
+            MediaMetadata.readTaken(file)
+        );
+    }
+
+    /**
+     * Ensures that the creation time of an MP4 is read when its movie box follows the media.
+     */
+    @Test
+    public void mp4Test() throws IOException {
+        ByteBuffer mp4 = ByteBuffer.allocate(16 + 108 + 36);
+        mp4.putInt(16).put("ftypisom".getBytes(StandardCharsets.US_ASCII)).putInt(0);
+        mp4.putInt(108).put("mdat".getBytes(StandardCharsets.US_ASCII)).position(16 + 108);
+        mp4.putInt(36).put("moov".getBytes(StandardCharsets.US_ASCII));
+        mp4.putInt(28).put("mvhd".getBytes(StandardCharsets.US_ASCII)).putInt(0);
+        // 2020-01-01T00:00:00Z in seconds since 1904.
+        mp4.putInt((int) 3660681600L);
+        Path file = Files.write(directory.resolve("clip.mp4"), mp4.array());
+
+        assertEquals(1577836800000L, MediaMetadata.readTaken(file));
+    }
+
+    /**
+     * Ensures that files without a capture time are missing one.
+     */
+    @Test
+    public void missingTest() throws IOException {
+        Path text = Files.write(
+            directory.resolve("notes.txt"),
+            "not a photo at all".getBytes(StandardCharsets.US_ASCII)
+        );
+        MediaMetadata metadata = MediaMetadata.read(
+            Arrays.asList(text.toString(), directory.resolve("missing.jpg").toString()),
+            null
+        );
+        assertEquals(FileAttributes.MISSING, metadata.getTaken(0));
+        assertEquals(FileAttributes.MISSING, metadata.getTaken(1));
+    }
+}
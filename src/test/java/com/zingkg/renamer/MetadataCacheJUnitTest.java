@@ -0,0 +1,162 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the cache of capture times and digests kept between runs.
+ */
+public class MetadataCacheJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private File cacheFile;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+        cacheFile = directory.resolve("metadata.cache").toFile();
+    }
+
+    /**
+     * Ensures that a saved entry is found by a later run, even after the file is renamed.
+     */
+    @Test
+    public void reopenTest() throws IOException {
+        Path photo = Files.write(directory.resolve("a.jpg"), new byte[]{1, 2, 3});
+        AtomicInteger reads = new AtomicInteger();
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 10)) {
+            assertEquals(42L, cache.getTaken(photo, path -> reads.incrementAndGet() + 41L));
+            assertArrayEquals(
+                new byte[]{7},
+                cache.getDigest(photo, "SHA-256", path -> new byte[]{(byte) (6 + reads.get())})
+            );
+        }
+
+        Path renamed = Files.move(photo, directory.resolve("b.jpg"));
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 10)) {
+            assertEquals(42L, cache.getTaken(renamed, path -> reads.incrementAndGet()));
+            assertArrayEquals(
+                new byte[]{7},
+                cache.getDigest(renamed, "SHA-256", path -> new byte[]{0})
+            );
+            assertArrayEquals(
+                new byte[]{9},
+                cache.getDigest(renamed, "MD5", path -> new byte[]{9})
+            );
+        }
+        assertEquals(1, reads.get());
+    }
+
+    /**
+     * Ensures that a digest is found under any spelling of its algorithm and that saving leaves no
+     * temporary file behind.
+     */
+    @Test
+    public void algorithmNameTest() throws IOException {
+        Path photo = Files.write(directory.resolve("a.jpg"), new byte[]{1, 2, 3});
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 10)) {
+            cache.getDigest(photo, "SHA-256", path -> new byte[]{7});
+        }
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 10)) {
+            assertArrayEquals(new byte[]{7}, cache.getDigest(photo, "sha-256", path -> null));
+            assertArrayEquals(new byte[]{7}, cache.getDigest(photo, "SHA256", path -> null));
+        }
+        assertEquals(2, directory.toFile().list().length);
+    }
+
+    /**
+     * Ensures that a changed file is read again.
+     */
+    @Test
+    public void changedTest() throws IOException {
+        Path photo = Files.write(directory.resolve("a.jpg"), new byte[]{1, 2, 3});
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 10)) {
+            cache.getTaken(photo, path -> 1L);
+        }
+
+        Files.setLastModifiedTime(photo, FileTime.fromMillis(0));
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 10)) {
+            assertEquals(2L, cache.getTaken(photo, path -> 2L));
+        }
+    }
+
+    /**
+     * Ensures that the least recently used entries are dropped beyond the limit.
+     */
+    @Test
+    public void limitTest() throws IOException {
+        Path first = Files.write(directory.resolve("a.jpg"), new byte[]{1});
+        Path second = Files.write(directory.resolve("b.jpg"), new byte[]{2});
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 1)) {
+            cache.getTaken(first, path -> 1L);
+        }
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 1)) {
+            cache.getTaken(second, path -> 2L);
+        }
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 1)) {
+            assertEquals(2L, cache.getTaken(second, path -> 0L));
+            assertEquals(0L, cache.getTaken(first, path -> 0L));
+        }
+    }
+
+    /**
+     * Ensures that a shared cache keeps the most entries any of its users asks for.
+     */
+    @Test
+    public void keepAtLeastTest() throws IOException {
+        Path first = Files.write(directory.resolve("a.jpg"), new byte[]{1});
+        Path second = Files.write(directory.resolve("b.jpg"), new byte[]{2});
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 1)) {
+            cache.keepAtLeast(2);
+            cache.keepAtLeast(1);
+            cache.getTaken(first, path -> 1L);
+            cache.getTaken(second, path -> 2L);
+        }
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 2)) {
+            assertEquals(1L, cache.getTaken(first, path -> 0L));
+            assertEquals(2L, cache.getTaken(second, path -> 0L));
+        }
+    }
+
+    /**
+     * Ensures that a cache replacing the file it mapped keeps the mapped entries, and that closing
+     * it again does not write it again without them.
+     */
+    @Test
+    public void closeTwiceTest() throws IOException {
+        Path first = Files.write(directory.resolve("a.jpg"), new byte[]{1});
+        Path second = Files.write(directory.resolve("b.jpg"), new byte[]{2});
+        try (MetadataCache cache = MetadataCache.open(cacheFile, 10)) {
+            cache.getTaken(first, path -> 1L);
+        }
+        MetadataCache cache = MetadataCache.open(cacheFile, 10);
+        cache.getTaken(second, path -> 2L);
+        cache.close();
+        cache.close();
+        try (MetadataCache reopened = MetadataCache.open(cacheFile, 10)) {
+            assertEquals(1L, reopened.getTaken(first, path -> 0L));
+            assertEquals(2L, reopened.getTaken(second, path -> 0L));
+        }
+    }
+
+    /**
+     * Ensures that a file that is not a cache is rejected.
+     */
+    @Test(expected = IOException.class)
+    public void invalidTest() throws IOException {
+        Files.write(cacheFile.toPath(), "not a cache at all".getBytes());
+        MetadataCache.open(cacheFile, 10).close();
+    }
+}
@@ -0,0 +1,239 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests naming files from a template.
+ */
+public class NameTemplateJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+    }
+
+    /**
+     * Ensures that the tokens are replaced and the extension is kept.
+     */
+    @Test
+    public void templateTest() throws IOException {
+        final String first = createFile("IMG_1.jpg", LocalDateTime.of(2019, 7, 4, 12, 0));
+        final String second = createFile("IMG_2", LocalDateTime.of(2020, 1, 31, 8, 30));
+        final String third = directory.resolve("missing.jpg").toString();
+        List<String> renamed = FileUtilities.template(
+            "{mtime:yyyyMMdd}_{n:3}-{name}",
+            9,
+            Stream.of(first, second, third)
+        ).map(File::getPath).collect(Collectors.toList());
+
+        assertEquals(
+            Arrays.asList(
+                directory.resolve("20190704_009-IMG_1.jpg").toString(),
+                directory.resolve("20200131_010-IMG_2").toString(),
+                third
+            ),
+            renamed
+        );
+    }
+
+    /**
+     * Ensures that the template tells why a file without the metadata a token needs keeps its
+     * name.
+     */
+    @Test
+    public void missingMetadataTest() throws IOException {
+        final String text = Files.write(directory.resolve("a.txt"), "hello".getBytes()).toString();
+        final String missing = directory.resolve("b.txt").toString();
+        List<String> files = Arrays.asList(text, missing);
+        NameTemplate taken = new NameTemplate("{taken:yyyy}", 1, null);
+        taken.prepare(files, 0);
+        assertEquals(text, taken.apply(text, 0));
+        assertEquals("The file has no capture time", taken.getMissing(0));
+        assertEquals(missing, taken.apply(missing, 1));
+        assertEquals("The file has no capture time", taken.getMissing(1));
+
+        NameTemplate mtime = new NameTemplate("{name}_{mtime:yyyy}", 1, null);
+        mtime.prepare(files, 0);
+        assertNotEquals(text, mtime.apply(text, 0));
+        assertNull(mtime.getMissing(0));
+        assertEquals(missing, mtime.apply(missing, 1));
+        assertNotNull(mtime.getMissing(1));
+    }
+
+    /**
+     * Ensures that files are named by their digest and that copies keep their name.
+     */
+    @Test
+    public void hashTest() throws IOException {
+        final String first = Files.write(directory.resolve("a.txt"), "hello".getBytes()).toString();
+        final String copy = Files.write(directory.resolve("b.txt"), "hello".getBytes()).toString();
+        final String other = Files.write(directory.resolve("c"), "other".getBytes()).toString();
+        NameTemplate operation = (NameTemplate) FileUtilities.hashOperation(12, null);
+        List<String> paths = Arrays.asList(first, copy, other);
+        operation.prepare(paths, 0);
+
+        final String renamed = directory.resolve("2cf24dba5fb0.txt").toString();
+        assertEquals(renamed, operation.apply(first, 0));
+        assertEquals(copy, operation.apply(copy, 1));
+        assertEquals(1, operation.getCopies().size());
+        assertArrayEquals(new String[]{copy, renamed}, operation.getCopies().get(0));
+        assertEquals(directory.resolve("d9298a10d1b0").toString(), operation.apply(other, 2));
+    }
+
+    /**
+     * Ensures that files with the same contents but different new names are renamed as usual.
+     */
+    @Test
+    public void hashNoCollisionTest() throws IOException {
+        final String first = Files.write(directory.resolve("a.txt"), "hello".getBytes()).toString();
+        final String same = Files.write(directory.resolve("b.txt"), "hello".getBytes()).toString();
+        NameTemplate operation = new NameTemplate("{name}_{hash:8}", 1, null);
+        operation.prepare(Arrays.asList(first, same), 0);
+
+        assertEquals(directory.resolve("a_2cf24dba.txt").toString(), operation.apply(first, 0));
+        assertEquals(directory.resolve("b_2cf24dba.txt").toString(), operation.apply(same, 1));
+        assertTrue(operation.getCopies().isEmpty());
+    }
+
+    /**
+     * Ensures that a copy of a file of an earlier batch keeps its name.
+     */
+    @Test
+    public void hashAcrossBatchesTest() throws IOException {
+        final String first = Files.write(directory.resolve("a.txt"), "hello".getBytes()).toString();
+        final String copy = Files.write(directory.resolve("b.txt"), "hello".getBytes()).toString();
+        NameTemplate operation = (NameTemplate) FileUtilities.hashOperation(12, null);
+        operation.prepare(Arrays.asList(first), 0);
+        final String renamed = directory.resolve("2cf24dba5fb0.txt").toString();
+        assertEquals(renamed, operation.apply(first, 0));
+        assertTrue(operation.getCopies().isEmpty());
+
+        operation.prepare(Arrays.asList(copy), 1);
+        assertEquals(copy, operation.apply(copy, 1));
+        assertEquals(1, operation.getCopies().size());
+        assertArrayEquals(new String[]{copy, renamed}, operation.getCopies().get(0));
+    }
+
+    /**
+     * Ensures that a chain names files by the digests of the files on disk and leaves copies
+     * alone.
+     */
+    @Test
+    public void chainTest() throws IOException {
+        final String first = Files.write(directory.resolve("a.txt"), "hello".getBytes()).toString();
+        final String copy = Files.write(directory.resolve("b.txt"), "hello".getBytes()).toString();
+        OperationChain chain = (OperationChain) FileUtilities.prependStringOperation("x-")
+            .andThen(FileUtilities.hashOperation(4, null))
+            .andThen(FileUtilities.appendStringOperation("-y"));
+        List<String> paths = Arrays.asList(first, copy);
+        chain.prepare(paths, 0);
+
+        final String renamed = directory.resolve("2cf2-y.txt").toString();
+        assertEquals(renamed, chain.apply(first, 0));
+        assertEquals(copy, chain.apply(copy, 1));
+        assertEquals(1, chain.getCopies().size());
+        assertArrayEquals(new String[]{copy, renamed}, chain.getCopies().get(0));
+    }
+
+    /**
+     * Ensures that a copy of a file of an earlier batch reports the name the chain gave the file.
+     */
+    @Test
+    public void chainAcrossBatchesTest() throws IOException {
+        final String first = Files.write(directory.resolve("a.txt"), "hello".getBytes()).toString();
+        final String copy = Files.write(directory.resolve("b.txt"), "hello".getBytes()).toString();
+        OperationChain chain = (OperationChain) FileUtilities.hashOperation(4, null)
+            .andThen(FileUtilities.appendStringOperation("-y"));
+        chain.prepare(Arrays.asList(first), 0);
+        chain.prepare(Arrays.asList(copy), 1);
+
+        assertEquals(copy, chain.apply(copy, 1));
+        assertEquals(1, chain.getCopies().size());
+        assertArrayEquals(
+            new String[]{copy, directory.resolve("2cf2-y.txt").toString()},
+            chain.getCopies().get(0)
+        );
+    }
+
+    /**
+     * Ensures that a template of plain tokens does not need to be prepared.
+     */
+    @Test
+    public void plainTemplateTest() {
+        FileOperation operation = new NameTemplate("{name}-{n}", 1, null);
+        final String directory = "a" + File.separator;
+        assertEquals(directory + "b-3.txt", operation.apply(directory + "b.txt", 2));
+    }
+
+    /**
+     * Ensures that a metadata token is not applied to files that were not prepared.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void unpreparedTest() {
+        new NameTemplate("{size}", 1, null).apply("a.txt", 0);
+    }
+
+    /**
+     * Ensures that unknown and unclosed tokens are rejected.
+     */
+    @Test
+    public void invalidTemplateTest() {
+        List<String> templates =
+            Arrays.asList("{date}", "{n", "n}", "{mtime:b}", "{hash:65}", "{hash:SHA-0:8}");
+        for (String template : templates) {
+            try {
+                new NameTemplate(template, 1, null);
+                fail(template);
+            } catch (IllegalArgumentException e) {
+                assertNotNull(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ensures that files are sorted by the time they were modified, and by name when it is equal.
+     */
+    @Test
+    public void mtimeSortTest() throws IOException {
+        final String newest = createFile("a.jpg", LocalDateTime.of(2021, 1, 1, 0, 0));
+        final String oldest = createFile("b.jpg", LocalDateTime.of(2019, 1, 1, 0, 0));
+        final String equal = createFile("c10.jpg", LocalDateTime.of(2020, 1, 1, 0, 0));
+        final String equalFirst = createFile("c9.jpg", LocalDateTime.of(2020, 1, 1, 0, 0));
+        assertEquals(
+            Arrays.asList(oldest, equalFirst, equal, newest),
+            FileSorter.sort(
+                Arrays.asList(newest, equal, oldest, equalFirst),
+                FileSorter.Order.MTIME
+            )
+        );
+    }
+
+    private String createFile(String name, LocalDateTime modified) throws IOException {
+        Path file = Files.createFile(directory.resolve(name));
+        Files.setLastModifiedTime(
+            file,
+            FileTime.from(modified.atZone(ZoneId.systemDefault()).toInstant())
+        );
+        return file.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.zingkg.renamer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the flight recorder events of a rename job.
+ */
+public class RenameEventsJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+    }
+
+    /**
+     * Ensures that a job records itself, the naming of its batch and each rename.
+     */
+    @Test
+    public void recordingTest() throws IOException {
+        final Path source = Files.createFile(directory.resolve("a.txt"));
+        final Path dump = directory.resolve("renamer.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.zingkg.renamer.Job");
+            recording.enable("com.zingkg.renamer.Naming");
+            recording.enable("com.zingkg.renamer.Rename").withThreshold(null);
+            recording.start();
+            String[] args = new String[]{
+                FileUtilities.NUMBER_APPEND_COMMAND,
+                "_",
+                "1",
+                source.toString()
+            };
+            assertEquals(CommandLine.SUCCESS, CommandLine.main(args));
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        RecordedEvent job = find(events, "com.zingkg.renamer.Job");
+        assertEquals(FileUtilities.NUMBER_APPEND_COMMAND, job.getString("command"));
+        assertEquals(CommandLine.SUCCESS, job.getInt("status"));
+        assertEquals(1, find(events, "com.zingkg.renamer.Naming").getInt("files"));
+        RecordedEvent rename = find(events, "com.zingkg.renamer.Rename");
+        assertEquals(source.toString(), rename.getString("source"));
+        assertEquals(directory.resolve("a_1.txt").toString(), rename.getString("target"));
+        assertTrue(rename.getBoolean("success"));
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name))
+                return event;
+        }
+        throw new AssertionError("No " + name + " event was recorded");
+    }
+}
@@ -0,0 +1,230 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the rename executor.
+ */
+public class RenameExecutorJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+    }
+
+    /**
+     * Ensures that many workers rename every file and keep the results in order.
+     */
+    @Test
+    public void concurrentRenameTest() throws Exception {
+        List<String> sources = createFiles(500);
+        List<File> targets = sources.stream()
+            .map(source -> new File(source + ".renamed"))
+            .collect(Collectors.toList());
+        List<RenameResult> results;
+        try (RenameExecutor executor = new RenameExecutor(8)) {
+            results = executor.execute(RenameSchedule.plan(
+                sources.stream().map(File::new).collect(Collectors.toList()),
+                targets
+            ));
+        }
+
+        assertEquals(sources.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertTrue(results.get(i).isSuccess());
+            assertEquals(new File(sources.get(i)), results.get(i).getSource());
+            assertEquals(targets.get(i), results.get(i).getTarget());
+            assertTrue(targets.get(i).exists());
+            assertFalse(new File(sources.get(i)).exists());
+        }
+    }
+
+    /**
+     * Ensures that a file that does not exist is reported as a failure.
+     */
+    @Test
+    public void missingFileTest() throws Exception {
+        List<String> sources = createFiles(1);
+        sources.add(directory.resolve("missing").toString());
+        List<RenameResult> results = FileUtilities.renameFiles(
+            sources.stream(),
+            sources.stream().map(source -> new File(source + "-new")),
+            2
+        );
+
+        assertTrue(results.get(0).isSuccess());
+        assertNull(results.get(0).getError());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError() instanceof NoSuchFileException);
+        assertTrue(results.get(1).getElapsedNanos() > 0);
+    }
+
+    /**
+     * Ensures that a rejected rename names why it was rejected.
+     */
+    @Test
+    public void rejectedReasonTest() throws Exception {
+        List<String> sources = createFiles(2);
+        List<RenameResult> results = FileUtilities.renameFiles(
+            Stream.of(sources.get(0)),
+            Stream.of(new File(sources.get(1))),
+            1
+        );
+
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(0).getError() instanceof FileAlreadyExistsException);
+        assertEquals("The file already exists", results.get(0).getFailureReason());
+        assertTrue(new File(sources.get(0)).exists());
+    }
+
+    /**
+     * Ensures that a cancelled executor stops renaming but still finishes a cycle.
+     */
+    @Test
+    public void cancelTest() throws Exception {
+        List<String> sources = createFiles(3);
+        List<File> targets = new ArrayList<>();
+        targets.add(new File(sources.get(1)));
+        targets.add(new File(sources.get(0)));
+        targets.add(new File(sources.get(2) + "-new"));
+        List<File> sourceFiles = sources.stream().map(File::new).collect(Collectors.toList());
+        List<RenameResult> results;
+        try (RenameExecutor executor = new RenameExecutor(2)) {
+            executor.cancel();
+            results = executor.execute(RenameSchedule.plan(sourceFiles, targets));
+        }
+
+        for (RenameResult result : results) {
+            if (result.getSource().equals(sourceFiles.get(2)))
+                assertTrue(result.getError() instanceof CancellationException);
+            else
+                assertTrue(result.isSuccess());
+        }
+        assertTrue(new File(sources.get(2)).exists());
+        assertEquals(3, directory.toFile().list().length);
+    }
+
+    /**
+     * Ensures that a cycle whose middle rename fails is rolled back, so every file is under its
+     * old name and none is left under a temporary name.
+     */
+    @Test
+    public void brokenCycleTest() throws Exception {
+        final Path a = Files.write(directory.resolve("a"), "a".getBytes("UTF-8"));
+        final Path b = Files.write(directory.resolve("b"), "b".getBytes("UTF-8"));
+        final Path c = Files.write(directory.resolve("c"), "c".getBytes("UTF-8"));
+        RenameSchedule schedule = RenameSchedule.plan(
+            Arrays.asList(a.toFile(), b.toFile(), c.toFile()),
+            Arrays.asList(b.toFile(), c.toFile(), a.toFile())
+        );
+        List<RenameResult> results;
+        try (RenameExecutor executor = new RenameExecutor(1)) {
+            results = executor.execute(schedule, new RenameExecutor.RenameListener() {
+                private int waves;
+
+                @Override
+                public void beforeWave(List<File> sources, List<File> targets) {
+                    // Take b away before it is renamed, so the cycle cannot be finished.
+                    if (++waves == 3) {
+                        assertEquals(b.toFile(), sources.get(0));
+                        assertTrue(b.toFile().delete());
+                    }
+                }
+            });
+        }
+
+        assertFalse(results.stream().allMatch(RenameResult::isSuccess));
+        assertEquals("a", new String(Files.readAllBytes(a), "UTF-8"));
+        assertEquals("c", new String(Files.readAllBytes(c), "UTF-8"));
+        assertFalse(Files.exists(b));
+        assertEquals(2, directory.toFile().list().length);
+    }
+
+    /**
+     * Ensures that a worker count below one is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void noWorkersTest() {
+        new RenameExecutor(0);
+    }
+
+    /**
+     * Ensures that only failures without a lasting cause of their own are retried.
+     */
+    @Test
+    public void transientTest() {
+        assertTrue(RenameExecutor.isTransient(
+            new FileSystemException("a", "b", "Device or resource busy")
+        ));
+        assertTrue(RenameExecutor.isTransient(new FileSystemException("a")));
+        assertFalse(RenameExecutor.isTransient(new NoSuchFileException("a")));
+        assertFalse(RenameExecutor.isTransient(new FileAlreadyExistsException("a")));
+        assertFalse(RenameExecutor.isTransient(new DirectoryNotEmptyException("a")));
+        assertEquals(
+            File.separatorChar == '\\',
+            RenameExecutor.isTransient(new AccessDeniedException("a"))
+        );
+        assertFalse(RenameExecutor.isTransient(new IOException("Stale file handle")));
+    }
+
+    /**
+     * Ensures that a file taking the new name after the renames were planned is not replaced.
+     */
+    @Test
+    public void targetAppearsTest() throws Exception {
+        List<String> sources = createFiles(1);
+        final File target = directory.resolve("new.txt").toFile();
+        RenameSchedule schedule = RenameSchedule.plan(
+            Arrays.asList(new File(sources.get(0))),
+            Arrays.asList(target)
+        );
+        Files.write(target.toPath(), "new".getBytes("UTF-8"));
+        List<RenameResult> results;
+        try (RenameExecutor executor = new RenameExecutor(1)) {
+            results = executor.execute(schedule);
+        }
+
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(0).getError() instanceof FileAlreadyExistsException);
+        assertEquals("new", new String(Files.readAllBytes(target.toPath()), "UTF-8"));
+        assertTrue(new File(sources.get(0)).exists());
+    }
+
+    /**
+     * Creates empty files in the test directory.
+     *
+     * @param count The number of files to create.
+     * @return The paths of the created files.
+     */
+    private List<String> createFiles(int count) throws IOException {
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            files.add(Files.createFile(directory.resolve("file" + i + ".txt")).toString());
+        return files;
+    }
+}
@@ -0,0 +1,157 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the rename journal.
+ */
+public class RenameJournalJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private File journalFile;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+        journalFile = directory.resolve("renames.journal").toFile();
+    }
+
+    /**
+     * Ensures that recorded renames and their outcomes are read back in order.
+     */
+    @Test
+    public void readBackTest() throws Exception {
+        List<File> sources = Arrays.asList(file("a.txt"), file("b.txt"), file("c.txt"));
+        List<File> targets = Arrays.asList(file("1-a.txt"), file("2-b.txt"), file("3-c.txt"));
+        try (RenameJournal journal = RenameJournal.open(journalFile)) {
+            journal.recordIntents(sources, targets);
+            journal.recordResults(Arrays.asList(
+                new RenameResult(sources.get(0), targets.get(0), true),
+                new RenameResult(sources.get(1), targets.get(1), false),
+                new RenameResult(sources.get(2), targets.get(2), true)
+            ));
+        }
+
+        List<RenameResult> renames = RenameJournal.read(journalFile);
+        assertEquals(3, renames.size());
+        for (int i = 0; i < renames.size(); i++) {
+            assertEquals(sources.get(i), renames.get(i).getSource());
+            assertEquals(targets.get(i), renames.get(i).getTarget());
+        }
+        assertTrue(renames.get(0).isSuccess());
+        assertFalse(renames.get(1).isSuccess());
+        assertTrue(renames.get(2).isSuccess());
+    }
+
+    /**
+     * Ensures that a batch without recorded outcomes is checked against the file system and that
+     * a torn record at the end is ignored.
+     */
+    @Test
+    public void crashedBatchTest() throws Exception {
+        Files.createFile(directory.resolve("moved-a.txt"));
+        Files.createFile(directory.resolve("b.txt"));
+        try (RenameJournal journal = RenameJournal.open(journalFile)) {
+            journal.recordIntents(
+                Arrays.asList(file("a.txt"), file("b.txt")),
+                Arrays.asList(file("moved-a.txt"), file("moved-b.txt"))
+            );
+            journal.recordIntents(
+                Arrays.asList(file("c.txt")),
+                Arrays.asList(file("moved-c.txt"))
+            );
+        }
+        try (RandomAccessFile torn = new RandomAccessFile(journalFile, "rw")) {
+            torn.setLength(torn.length() - 3);
+        }
+
+        List<RenameResult> renames = RenameJournal.read(journalFile);
+        assertEquals(2, renames.size());
+        assertTrue(renames.get(0).isSuccess());
+        assertFalse(renames.get(1).isSuccess());
+    }
+
+    /**
+     * Ensures that reopening a journal with a torn record at the end cuts the record off, so the
+     * records written after it are read back.
+     */
+    @Test
+    public void appendAfterTornRecordTest() throws Exception {
+        try (RenameJournal journal = RenameJournal.open(journalFile)) {
+            journal.recordIntents(
+                Arrays.asList(file("a.txt")),
+                Arrays.asList(file("1-a.txt"))
+            );
+            journal.recordResults(Arrays.asList(
+                new RenameResult(file("a.txt"), file("1-a.txt"), true)
+            ));
+        }
+        try (RandomAccessFile torn = new RandomAccessFile(journalFile, "rw")) {
+            torn.setLength(torn.length() - 3);
+        }
+        try (RenameJournal journal = RenameJournal.open(journalFile)) {
+            journal.recordIntents(
+                Arrays.asList(file("b.txt")),
+                Arrays.asList(file("2-b.txt"))
+            );
+            journal.recordResults(Arrays.asList(
+                new RenameResult(file("b.txt"), file("2-b.txt"), true)
+            ));
+        }
+
+        List<RenameResult> renames = RenameJournal.read(journalFile);
+        assertEquals(2, renames.size());
+        assertEquals(file("b.txt"), renames.get(1).getSource());
+        assertTrue(renames.get(1).isSuccess());
+    }
+
+    /**
+     * Ensures that a record claiming to be longer than the rest of the journal is treated as torn.
+     */
+    @Test
+    public void garbageLengthTest() throws Exception {
+        try (RenameJournal journal = RenameJournal.open(journalFile)) {
+            journal.recordIntents(
+                Arrays.asList(file("a.txt")),
+                Arrays.asList(file("1-a.txt"))
+            );
+        }
+        try (RandomAccessFile garbage = new RandomAccessFile(journalFile, "rw")) {
+            garbage.seek(garbage.length());
+            garbage.write(1);
+            garbage.writeInt(Integer.MAX_VALUE);
+            garbage.writeInt(0);
+        }
+
+        assertEquals(1, RenameJournal.read(journalFile).size());
+        RenameJournal.open(journalFile).close();
+        assertEquals(1, RenameJournal.read(journalFile).size());
+    }
+
+    /**
+     * Ensures that a file that is not a journal is rejected.
+     */
+    @Test(expected = IOException.class)
+    public void notJournalTest() throws Exception {
+        Files.write(journalFile.toPath(), Arrays.asList("not a journal"));
+        RenameJournal.open(journalFile);
+    }
+
+    private File file(String name) {
+        return directory.resolve(name).toFile();
+    }
+}
@@ -0,0 +1,197 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the planning of renames that depend on each other.
+ */
+public class RenameScheduleJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+    }
+
+    /**
+     * Ensures that a chain of renames runs from its end so no file is overwritten.
+     */
+    @Test
+    public void chainTest() throws Exception {
+        createFiles("a", "b", "c");
+        RenameSchedule schedule = RenameSchedule.plan(
+            files("a", "b", "c"),
+            files("b", "c", "d")
+        );
+        assertEquals(3, schedule.getWaves().size());
+        assertTrue(schedule.getRejected().isEmpty());
+
+        run(schedule);
+        assertEquals("a", read("b"));
+        assertEquals("b", read("c"));
+        assertEquals("c", read("d"));
+        assertFalse(new File(directory.toFile(), "a").exists());
+    }
+
+    /**
+     * Ensures that two files trade names through a temporary name.
+     */
+    @Test
+    public void swapTest() throws Exception {
+        createFiles("a", "b");
+        RenameSchedule schedule = RenameSchedule.plan(files("a", "b"), files("b", "a"));
+        assertTrue(schedule.getRejected().isEmpty());
+
+        run(schedule);
+        assertEquals("b", read("a"));
+        assertEquals("a", read("b"));
+        assertEquals(2, directory.toFile().list().length);
+    }
+
+    /**
+     * Ensures that shifting every number up by one works without collisions.
+     */
+    @Test
+    public void numberShiftTest() throws Exception {
+        List<String> sources = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            createFiles(i + ".txt");
+            sources.add(directory.resolve(i + ".txt").toString());
+        }
+        List<File> targets = new ArrayList<>();
+        for (int i = 1; i <= 100; i++)
+            targets.add(new File(directory.toFile(), (i + 1) + ".txt"));
+        List<RenameResult> results = FileUtilities.renameFiles(
+            sources.stream(),
+            targets.stream(),
+            4
+        );
+        assertEquals(100, results.size());
+        for (RenameResult result : results)
+            assertTrue(result.isSuccess());
+        for (int i = 2; i <= 101; i++)
+            assertEquals((i - 1) + ".txt", read(i + ".txt"));
+        assertFalse(new File(directory.toFile(), "1.txt").exists());
+    }
+
+    /**
+     * Ensures that files renamed to the same target are both rejected.
+     */
+    @Test
+    public void duplicateTargetTest() throws Exception {
+        createFiles("a", "b", "c");
+        RenameSchedule schedule = RenameSchedule.plan(
+            files("a", "b", "c"),
+            files("d", "d", "e")
+        );
+        assertEquals(2, schedule.getRejected().size());
+        assertEquals(1, schedule.getConflicts().size());
+
+        run(schedule);
+        assertTrue(new File(directory.toFile(), "a").exists());
+        assertTrue(new File(directory.toFile(), "b").exists());
+        assertEquals("c", read("e"));
+    }
+
+    /**
+     * Ensures that a file outside the batch is not overwritten, and neither is a file waiting on
+     * the rejected rename.
+     */
+    @Test
+    public void existingTargetTest() throws Exception {
+        createFiles("a", "b", "other");
+        RenameSchedule schedule = RenameSchedule.plan(files("a", "b"), files("b", "other"));
+        assertEquals(2, schedule.getRejected().size());
+        assertTrue(schedule.getWaves().isEmpty());
+        assertEquals("other", read("other"));
+    }
+
+    /**
+     * Ensures that a rename onto a file of a later batch, and the renames waiting on it, are
+     * deferred and then run with the batch that moves the file away.
+     */
+    @Test
+    public void deferredTest() throws Exception {
+        createFiles("a", "b", "c");
+        RenameSchedule first = RenameSchedule.plan(files("a", "b"), files("b", "c"), true);
+        assertTrue(first.getRejected().isEmpty());
+        assertTrue(first.getWaves().isEmpty());
+        assertEquals(files("a", "b"), first.getDeferredSources());
+        assertEquals(files("b", "c"), first.getDeferredTargets());
+
+        List<File> sources = new ArrayList<>(first.getDeferredSources());
+        List<File> targets = new ArrayList<>(first.getDeferredTargets());
+        sources.addAll(files("c"));
+        targets.addAll(files("d"));
+        RenameSchedule second = RenameSchedule.plan(sources, targets, false);
+        assertTrue(second.getDeferredSources().isEmpty());
+        run(second);
+        assertEquals("a", read("b"));
+        assertEquals("b", read("c"));
+        assertEquals("c", read("d"));
+    }
+
+    /**
+     * Ensures that a rename waiting on a file that failed to move away is not attempted.
+     */
+    @Test
+    public void failedBlockerTest() throws Exception {
+        createFiles("a", "b");
+        List<RenameResult> results;
+        try (RenameExecutor executor = new RenameExecutor(1)) {
+            results = executor.execute(RenameSchedule.plan(
+                files("a", "b"),
+                files("b", "missing/c")
+            ));
+        }
+        assertEquals(2, results.size());
+        for (RenameResult result : results)
+            assertFalse(result.isSuccess());
+        assertEquals("a", read("a"));
+        assertEquals("b", read("b"));
+    }
+
+    private void run(RenameSchedule schedule) {
+        try (RenameExecutor executor = new RenameExecutor(2)) {
+            for (RenameResult result : executor.execute(schedule)) {
+                final boolean rejected = schedule.getRejected().contains(result);
+                assertEquals(result.toString(), rejected, !result.isSuccess());
+            }
+        }
+    }
+
+    private List<File> files(String... names) {
+        return Arrays.stream(names)
+            .map(name -> new File(directory.toFile(), name))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates files that hold their own name.
+     */
+    private void createFiles(String... names) throws IOException {
+        for (String name : names)
+            Files.write(directory.resolve(name), name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(directory.resolve(name)), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,156 @@
+package com.zingkg.renamer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Tests running rename jobs read as JSON lines.
+ */
+public class RenameServerJUnitTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath();
+    }
+
+    /**
+     * Ensures that each job is run, its renames are written and it ends with its status.
+     */
+    @Test
+    public void serveTest() throws IOException {
+        final String first = Files.createFile(directory.resolve("a.txt")).toString();
+        final String second = Files.createFile(directory.resolve("b.txt")).toString();
+        final String jobs =
+            "{\"id\": \"one\", \"args\": [\"--num-append\", \"_\", \"1\", " + quote(first) +
+            "]}\n" +
+            "\n" +
+            "{\"id\": \"two\", \"args\": [\"--pre-str\", \"x-\", " + quote(second) + "]}\n" +
+            "{\"id\": \"three\", \"args\": [\"--num-append\"]}\n" +
+            "not a job\n";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (RenameServer server = new RenameServer(new PrintStream(output, true), 2, 2, 1)) {
+            server.serve(new BufferedReader(new StringReader(jobs)));
+        }
+
+        assertTrue(Files.exists(directory.resolve("a_1.txt")));
+        assertTrue(Files.exists(directory.resolve("x-b.txt")));
+        List<Map<String, Object>> lines = Arrays.stream(output.toString().split("\n"))
+            .map(JsonLines::parseObject)
+            .collect(Collectors.toList());
+        assertEquals(6, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.containsKey("error")));
+        assertTrue(hasLine(lines, "one", "status", "0"));
+        assertTrue(hasLine(lines, "two", "status", "0"));
+        assertTrue(hasLine(lines, "three", "status", "1"));
+        assertTrue(hasLine(lines, "one", "target", directory.resolve("a_1.txt").toString()));
+        assertTrue(hasLine(lines, "two", "success", Boolean.TRUE));
+    }
+
+    /**
+     * Ensures that jobs naming the same cache share it, so the digests read by each are saved.
+     */
+    @Test
+    public void sharedCacheTest() throws IOException {
+        final Path cacheFile = directory.resolve("metadata.cache");
+        final String first = Files.write(directory.resolve("a.txt"), "a".getBytes()).toString();
+        final String second = Files.write(directory.resolve("b.txt"), "b".getBytes()).toString();
+        final String job =
+            "{\"args\": [\"--cache\", " + quote(cacheFile.toString()) + ", \"--hash\", \"8\", ";
+        final String jobs = job + quote(first) + "]}\n" + job + quote(second) + "]}\n";
+        try (RenameServer server = new RenameServer(
+            new PrintStream(new ByteArrayOutputStream(), true),
+            2,
+            2,
+            1
+        )) {
+            server.serve(new BufferedReader(new StringReader(jobs)));
+        }
+
+        List<Path> renamed;
+        try (Stream<Path> files = Files.list(directory)) {
+            renamed = files.filter(file -> !file.equals(cacheFile)).collect(Collectors.toList());
+        }
+        assertEquals(2, renamed.size());
+        try (MetadataCache cache = MetadataCache.open(cacheFile.toFile(), 10)) {
+            for (Path file : renamed)
+                assertEquals(32, cache.getDigest(file, "SHA-256", path -> new byte[0]).length);
+        }
+    }
+
+    /**
+     * Ensures that strings survive being written and read back.
+     */
+    @Test
+    public void jsonTest() {
+        final String value = "quote \" slash \\ tab \t line \n bell \u0007 \u00e9";
+        Map<String, Object> object = JsonLines.parseObject(
+            JsonLines.appendString(new StringBuilder("{\"value\": "), value).append('}').toString()
+        );
+        assertEquals(value, object.get("value"));
+        assertEquals(
+            Arrays.asList("a", "b"),
+            JsonLines.parseObject(" { \"list\" : [ \"a\" , \"b\" ] } ").get("list")
+        );
+    }
+
+    /**
+     * Ensures that a line nested too deeply is answered with an error and the server goes on to
+     * the next job.
+     */
+    @Test
+    public void deepNestingTest() throws IOException {
+        final String first = Files.createFile(directory.resolve("a.txt")).toString();
+        StringBuilder jobs = new StringBuilder("{\"args\": ");
+        for (int i = 0; i < 100000; i++)
+            jobs.append('[');
+        jobs.append("\n{\"id\": \"one\", \"args\": [\"--pre-str\", \"x-\", ")
+            .append(quote(first))
+            .append("]}\n");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (RenameServer server = new RenameServer(new PrintStream(output, true), 1, 1, 1)) {
+            server.serve(new BufferedReader(new StringReader(jobs.toString())));
+        }
+
+        List<Map<String, Object>> lines = Arrays.stream(output.toString().split("\n"))
+            .map(JsonLines::parseObject)
+            .collect(Collectors.toList());
+        assertTrue(lines.get(0).containsKey("error"));
+        assertTrue(hasLine(lines, "one", "status", "0"));
+        assertTrue(Files.exists(directory.resolve("x-a.txt")));
+    }
+
+    private static boolean hasLine(
+        List<Map<String, Object>> lines,
+        String id,
+        String key,
+        Object value
+    ) {
+        return lines.stream().anyMatch(
+            line -> id.equals(line.get("id")) && value.equals(line.get(key))
+        );
+    }
+
+    private static String quote(String value) {
+        return JsonLines.appendString(new StringBuilder(), value).toString();
+    }
+}
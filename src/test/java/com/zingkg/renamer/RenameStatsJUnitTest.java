@@ -0,0 +1,93 @@
+package com.zingkg.renamer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the rename stats and their latency histogram.
+ */
+public class RenameStatsJUnitTest {
+    /**
+     * Ensures that the percentiles are within the precision of the histogram.
+     */
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (long nanos = 1; nanos <= 100000; nanos++)
+            histogram.record(nanos * 1000);
+
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000L, histogram.getMax());
+        assertWithin(50000000L, histogram.getPercentile(50));
+        assertWithin(99000000L, histogram.getPercentile(99));
+        assertEquals(100000000L, histogram.getPercentile(100));
+        assertWithin(1000L, histogram.getPercentile(0));
+    }
+
+    /**
+     * Ensures that small and huge durations land in buckets of their own.
+     */
+    @Test
+    public void extremesTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(7);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getPercentile(30));
+        assertEquals(7, histogram.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+
+    /**
+     * Ensures that renames are counted and phases are timed.
+     */
+    @Test
+    public void recordTest() {
+        RenameStats stats = new RenameStats();
+        stats.enter(RenameStats.Phase.NAME);
+        stats.enter(RenameStats.Phase.RENAME);
+        List<RenameResult> results = new ArrayList<>(Arrays.asList(
+            new RenameResult(new File("a"), new File("b"), true, null, 2000),
+            new RenameResult(new File("c"), new File("d"), false, null, 4000),
+            new RenameResult(new File("e"), new File("f"), true)
+        ));
+        stats.record(results);
+        stats.stop();
+
+        assertEquals(3, stats.getFiles());
+        assertEquals(1, stats.getFailures());
+        assertEquals(4000, stats.getMaxLatencyNanos());
+        assertWithin(2000, stats.getLatencyNanos(50));
+        assertTrue(stats.getWallNanos(RenameStats.Phase.NAME) >= 0);
+        assertEquals(0, stats.getWallNanos(RenameStats.Phase.PREPARE));
+        final long total = stats.getTotalNanos();
+        assertTrue(stats.getWallNanos(RenameStats.Phase.RENAME) <= total);
+        assertEquals(total, stats.getTotalNanos());
+        assertTrue(stats.toString().contains("3 files, 1 failed"));
+    }
+
+    /**
+     * Ensures that disabled stats record nothing.
+     */
+    @Test
+    public void disabledTest() {
+        RenameStats stats = RenameStats.disabled();
+        stats.enter(RenameStats.Phase.RENAME);
+        stats.record(Arrays.asList(new RenameResult(new File("a"), new File("b"), true)));
+        stats.stop();
+        assertFalse(stats.isEnabled());
+        assertEquals(0, stats.getFiles());
+        assertEquals(0, stats.getWallNanos(RenameStats.Phase.RENAME));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not near " + expected, actual >= expected);
+        assertTrue(actual + " is not near " + expected, actual <= expected + expected / 16);
+    }
+}